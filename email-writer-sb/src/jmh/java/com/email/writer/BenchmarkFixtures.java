@@ -0,0 +1,76 @@
+package com.email.writer;
+
+/**
+ * Representative inputs shared by the benchmarks: a typical incoming email and
+ * a generateContent response shaped like Gemini's, including the safety
+ * ratings and metadata the service ignores.
+ */
+final class BenchmarkFixtures {
+
+    static final String EMAIL_CONTENT = """
+            Hi team,
+
+            Thanks for sending over the Q3 planning document. I had a chance to read through it this
+            morning and overall it looks solid. A couple of questions before Thursday's review:
+
+            1. The hiring plan assumes two backend engineers start in August - is that still realistic
+               given where the requisitions are?
+            2. Can we get a rough estimate for the migration work in section 4? Finance wants a number
+               before they sign off on the infrastructure budget.
+
+            Also, could someone confirm whether the customer advisory board meeting moved to the 14th?
+
+            Best,
+            Priya
+            """;
+
+    private BenchmarkFixtures() {
+    }
+
+    static EmailRequest request() {
+        return new EmailRequest(EMAIL_CONTENT, "friendly", "Keep it under 150 words");
+    }
+
+    // Enough of the service for the pure prompt/extraction methods; nothing upstream is wired
+    static EmailGeneratorService service() {
+        return new EmailGeneratorService(null, null, null, null, null, null, new GeminiCallPermits(1, 0));
+    }
+
+    static String prompt() {
+        return service().buildDynamicPrompt(request());
+    }
+
+    static String geminiResponse() {
+        return """
+                {
+                  "candidates": [
+                    {
+                      "content": {
+                        "parts": [
+                          {
+                            "text": "Hi Priya,\\n\\nThanks for taking the time to go through the Q3 plan so quickly - really glad it looks solid overall.\\n\\nOn the hiring plan: the August start dates are tight. Both requisitions are open, and we're checking with recruiting this week.\\n\\nFor the migration in section 4, we'll put together a rough estimate before Thursday so Finance has a number to work with.\\n\\nI'll double-check the advisory board date and confirm shortly.\\n\\nBest regards,\\nAlex"
+                          }
+                        ],
+                        "role": "model"
+                      },
+                      "finishReason": "STOP",
+                      "safetyRatings": [
+                        {"category": "HARM_CATEGORY_SEXUALLY_EXPLICIT", "probability": "NEGLIGIBLE"},
+                        {"category": "HARM_CATEGORY_HATE_SPEECH", "probability": "NEGLIGIBLE"},
+                        {"category": "HARM_CATEGORY_HARASSMENT", "probability": "NEGLIGIBLE"},
+                        {"category": "HARM_CATEGORY_DANGEROUS_CONTENT", "probability": "NEGLIGIBLE"}
+                      ],
+                      "avgLogprobs": -0.2461
+                    }
+                  ],
+                  "usageMetadata": {
+                    "promptTokenCount": 231,
+                    "candidatesTokenCount": 118,
+                    "totalTokenCount": 349,
+                    "promptTokensDetails": [{"modality": "TEXT", "tokenCount": 231}]
+                  },
+                  "modelVersion": "gemini-2.0-flash"
+                }
+                """;
+    }
+}
@@ -0,0 +1,108 @@
+package com.email.writer;
+
+import com.email.writer.ratelimit.ClientClassifier;
+import com.email.writer.ratelimit.ClientIdentity;
+import com.email.writer.ratelimit.ClientIpResolver;
+import com.email.writer.ratelimit.InMemoryRateLimitBackend;
+import com.email.writer.ratelimit.QuotaRegistry;
+import com.email.writer.ratelimit.RateLimitDecision;
+import com.email.writer.ratelimit.RateLimitFilter;
+import com.email.writer.ratelimit.RateLimitingService;
+import com.email.writer.ratelimit.RefillPolicy;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * Everything the web layer adds around a generation: request JSON binding,
+ * bean validation, rate-limit bookkeeping and response serialization, through
+ * a standalone MockMvc. Gemini is stubbed out and the limiter always allows,
+ * so the numbers are the per-request overhead of the controller itself.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ControllerBenchmark {
+
+    private static final String REPLY = "Hi Priya,\n\nThanks for the quick review - we'll have the migration "
+            + "estimate and hiring update ready before Thursday.\n\nBest regards,\nAlex";
+
+    private MockMvc mockMvc;
+    private String requestJson;
+
+    @Setup
+    public void setUp() throws Exception {
+        EmailGeneratorService emailGeneratorService = new EmailGeneratorService(null, null, null, null, null, null, new GeminiCallPermits(1, 0)) {
+            @Override
+            public String generateEmailReply(EmailRequest request, IntConsumer onTokens) {
+                buildDynamicPrompt(request);
+                return REPLY;
+            }
+        };
+        // Takes the real lookup path but never charges, so the client is never limited
+        QuotaRegistry quotas = new QuotaRegistry(new StandardEnvironment(), "");
+        RateLimitingService rateLimitingService = new RateLimitingService(
+                new InMemoryRateLimitBackend(RefillPolicy.DAILY_FIXED_WINDOW, "concurrent-map", Optional.empty()),
+                quotas) {
+            @Override
+            public RateLimitDecision acquire(ClientIdentity client, int permits) {
+                return super.acquire(client, 0);
+            }
+        };
+
+        EmailGeneratorController controller = new EmailGeneratorController();
+        ReflectionTestUtils.setField(controller, "emailGeneratorService", emailGeneratorService);
+        ReflectionTestUtils.setField(controller, "rateLimitingService", rateLimitingService);
+        ClientClassifier clientClassifier = new ClientClassifier(quotas);
+        ClientIpResolver clientIpResolver = new ClientIpResolver("127.0.0.0/8,::1/128");
+        ReflectionTestUtils.setField(controller, "clientClassifier", clientClassifier);
+        ReflectionTestUtils.setField(controller, "clientIpResolver", clientIpResolver);
+        mockMvc = MockMvcBuilders.standaloneSetup(controller)
+                .addFilters(new RateLimitFilter(rateLimitingService, clientClassifier, clientIpResolver,
+                        new ObjectMapper()))
+                .build();
+
+        requestJson = "{\"emailContent\":" + new ObjectMapper()
+                .writeValueAsString(BenchmarkFixtures.EMAIL_CONTENT)
+                + ",\"tone\":\"friendly\",\"customPrompt\":\"Keep it under 150 words\"}";
+    }
+
+    @Benchmark
+    public String generateReply() throws Exception {
+        return mockMvc.perform(post("/api/email/generate-reply")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header("X-Forwarded-For", "203.0.113.7")
+                        .content(requestJson))
+                .andReturn().getResponse().getContentAsString();
+    }
+
+    @Benchmark
+    public String usage() throws Exception {
+        return mockMvc.perform(get("/api/email/usage")
+                        .header("X-Forwarded-For", "203.0.113.7"))
+                .andReturn().getResponse().getContentAsString();
+    }
+}
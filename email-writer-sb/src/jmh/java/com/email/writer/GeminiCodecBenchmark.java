@@ -0,0 +1,118 @@
+package com.email.writer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request encoding and response decoding per Gemini call: the Map-based code
+ * the service used before GeminiCodec ("legacy*") against the codec. Run with
+ * -prof gc to compare gc.alloc.rate.norm (bytes allocated per call).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GeminiCodecBenchmark {
+
+    private ObjectMapper objectMapper;
+    private GeminiCodec codec;
+    private EmailGeneratorService service;
+    private String prompt;
+    private byte[] responseBody;
+
+    @Setup
+    public void setUp() {
+        objectMapper = new ObjectMapper();
+        codec = new GeminiCodec(objectMapper, 0.7);
+        service = BenchmarkFixtures.service();
+        prompt = BenchmarkFixtures.prompt();
+        responseBody = BenchmarkFixtures.geminiResponse().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] legacyEncode() throws IOException {
+        return objectMapper.writeValueAsBytes(legacyRequestBody(prompt));
+    }
+
+    @Benchmark
+    public byte[] codecEncode() {
+        return codec.encodeRequest(prompt);
+    }
+
+    @Benchmark
+    public String legacyDecode() throws IOException {
+        return legacyExtractText(objectMapper.readValue(responseBody, Map.class));
+    }
+
+    @Benchmark
+    public String codecDecode() throws IOException {
+        return codec.decodeResponse(responseBody).candidates().get(0).text();
+    }
+
+    // What the service actually does per response: decode plus candidate validation
+    @Benchmark
+    public String codecDecodeAndExtract() throws IOException {
+        return service.extractResponseText(codec.decodeResponse(responseBody));
+    }
+
+    // Verbatim shape of the old EmailGeneratorService.createGeminiRequestBody
+    private static Map<String, Object> legacyRequestBody(String prompt) {
+        Map<String, Object> requestBody = new HashMap<>();
+
+        Map<String, String> textPart = new HashMap<>();
+        textPart.put("text", prompt);
+
+        Map<String, Object> part = new HashMap<>();
+        part.put("parts", List.of(textPart));
+
+        requestBody.put("contents", List.of(part));
+
+        Map<String, Object> generationConfig = new HashMap<>();
+        generationConfig.put("temperature", 0.7);
+        generationConfig.put("topK", 40);
+        generationConfig.put("topP", 0.95);
+        generationConfig.put("maxOutputTokens", 1024);
+        requestBody.put("generationConfig", generationConfig);
+
+        requestBody.put("safetySettings", List.of(
+                legacySafetySetting("HARM_CATEGORY_HARASSMENT"),
+                legacySafetySetting("HARM_CATEGORY_HATE_SPEECH"),
+                legacySafetySetting("HARM_CATEGORY_SEXUALLY_EXPLICIT"),
+                legacySafetySetting("HARM_CATEGORY_DANGEROUS_CONTENT")));
+        return requestBody;
+    }
+
+    private static Map<String, Object> legacySafetySetting(String category) {
+        Map<String, Object> setting = new HashMap<>();
+        setting.put("category", category);
+        setting.put("threshold", "BLOCK_NONE");
+        return setting;
+    }
+
+    // Verbatim walk of the old EmailGeneratorService.extractResponseText
+    @SuppressWarnings("unchecked")
+    private static String legacyExtractText(Map<String, Object> responseBody) {
+        List<Map<String, Object>> candidates = (List<Map<String, Object>>) responseBody.get("candidates");
+        Map<String, Object> content = (Map<String, Object>) candidates.get(0).get("content");
+        List<Map<String, Object>> parts = (List<Map<String, Object>>) content.get("parts");
+        return ((String) parts.get(0).get("text")).trim();
+    }
+}
@@ -0,0 +1,51 @@
+package com.email.writer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prompt assembly, which runs on every generation including cache hits (the
+ * cache key is the prompt hash). "unknown" takes the fallback branch that
+ * logs a warning.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PromptBenchmark {
+
+    @Param({"professional", "concise", "unknown"})
+    private String tone;
+
+    private EmailGeneratorService service;
+    private EmailRequest request;
+
+    @Setup
+    public void setUp() {
+        service = BenchmarkFixtures.service();
+        request = new EmailRequest(BenchmarkFixtures.EMAIL_CONTENT, tone, "Keep it under 150 words");
+    }
+
+    @Benchmark
+    public String buildDynamicPrompt() {
+        return service.buildDynamicPrompt(request);
+    }
+
+    @Benchmark
+    public String getToneInstructions() {
+        return service.getToneInstructions(tone);
+    }
+}
@@ -0,0 +1,66 @@
+package com.email.writer.ratelimit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client identification as done by both controllers for every call.
+ * "forwarded" is the common production case behind two proxies, "forwarded-v6"
+ * the same with IPv6 hops, "spoofed" a forwarding header sent straight from an
+ * untrusted client, "direct" a client with no proxy, and "loopback" local
+ * development where the machine's own address is used.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClientIpBenchmark {
+
+    @Param({"forwarded", "forwarded-v6", "spoofed", "direct", "loopback"})
+    private String scenario;
+
+    private ClientIpResolver resolver;
+    private MockHttpServletRequest request;
+
+    @Setup
+    public void setUp() {
+        resolver = new ClientIpResolver("127.0.0.0/8,::1/128,10.0.0.0/8,172.16.0.0/12,192.168.0.0/16,fc00::/7");
+        request = new MockHttpServletRequest("GET", "/api/rate-limit/check");
+        switch (scenario) {
+            case "forwarded" -> {
+                request.addHeader("X-Forwarded-For", "203.0.113.7, 10.0.0.12");
+                request.setRemoteAddr("10.0.0.3");
+            }
+            case "forwarded-v6" -> {
+                request.addHeader("X-Forwarded-For", "2001:db8:85a3::8a2e:370:7334, fd12:3456:789a::1");
+                request.setRemoteAddr("fd12:3456:789a::2");
+            }
+            case "spoofed" -> {
+                request.addHeader("X-Forwarded-For", "192.0.2.1");
+                request.setRemoteAddr("198.51.100.24");
+            }
+            case "direct" -> request.setRemoteAddr("198.51.100.24");
+            case "loopback" -> request.setRemoteAddr("127.0.0.1");
+            default -> throw new IllegalArgumentException(scenario);
+        }
+    }
+
+    @Benchmark
+    public String resolve() {
+        return resolver.resolve(request);
+    }
+}
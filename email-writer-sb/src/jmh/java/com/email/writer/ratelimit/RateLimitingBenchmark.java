@@ -0,0 +1,83 @@
+package com.email.writer.ratelimit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Clock;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The limiter under contention from 8 threads. keys=1 is every request coming
+ * from one address (the worst case for a per-identifier lock); keys=100000
+ * spreads the load the way distinct clients would. Any limit saturates
+ * within milliseconds at these rates, so calls acquire zero permits: the
+ * full refresh/check/compareAndSet path runs every time but nobody is ever
+ * rejected.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class RateLimitingBenchmark {
+
+    @Param({"1", "100000"})
+    private int keys;
+
+    @Param({"DAILY_FIXED_WINDOW", "SLIDING_WINDOW", "TOKEN_BUCKET"})
+    private RefillPolicy policy;
+
+    @Param({"concurrent-map", "compact"})
+    private String store;
+
+    private RateLimitingService rateLimitingService;
+    private String[] identifiers;
+
+    @Setup
+    public void setUp() {
+        rateLimitingService = new RateLimitingService(
+                new InMemoryRateLimitBackend(UsageStore.factory(store), policy, Clock.systemDefaultZone(), null), 5);
+        identifiers = new String[keys];
+        for (int i = 0; i < keys; i++) {
+            identifiers[i] = "10." + (i >> 16 & 0xff) + "." + (i >> 8 & 0xff) + "." + (i & 0xff);
+            rateLimitingService.tryAcquire(identifiers[i], 1);
+        }
+    }
+
+    private String nextIdentifier() {
+        return keys == 1 ? identifiers[0] : identifiers[ThreadLocalRandom.current().nextInt(keys)];
+    }
+
+    @Benchmark
+    public boolean tryAcquire() {
+        return rateLimitingService.tryAcquire(nextIdentifier(), 0);
+    }
+
+    // What the controllers do: charge and add the usage info to their response from one lookup
+    @Benchmark
+    public Map<String, Object> acquireWithUsageInfo() {
+        Map<String, Object> response = new HashMap<>();
+        rateLimitingService.acquire(nextIdentifier(), 0).putUsageInfo(response);
+        return response;
+    }
+
+    @Benchmark
+    public ApiUsageResponse getUsageInfo() {
+        return rateLimitingService.getUsageInfo(nextIdentifier());
+    }
+}
@@ -0,0 +1,81 @@
+package com.email.writer.ratelimit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Retained heap per tracked client for each store, reported as the
+ * bytesPerClient counter next to the time to populate the store. Identifiers
+ * are built fresh for every client, as they are per request, so the map pays
+ * for keeping its key strings alive and the compact store does not.
+ * Aux counters are summed over iterations, hence a single measured one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class UsageStoreFootprintBenchmark {
+
+    private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+
+    @Param({"concurrent-map", "compact"})
+    private String store;
+
+    @Param({"ipv4", "ipv6"})
+    private String addresses;
+
+    @Param({"1000000"})
+    private int clients;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        public long bytesPerClient;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytesPerClient = 0;
+        }
+    }
+
+    @Benchmark
+    public UsageStore populate(Footprint footprint) {
+        long before = usedHeapAfterGc();
+        UsageStore usageStore = UsageStore.factory(store).get();
+        for (int i = 0; i < clients; i++) {
+            usageStore.update(identifier(i), state -> 1L);
+        }
+        footprint.bytesPerClient = (usedHeapAfterGc() - before) / clients;
+        return usageStore;
+    }
+
+    private String identifier(int i) {
+        return addresses.equals("ipv4")
+                ? (10 + (i >>> 24)) + "." + (i >>> 16 & 0xff) + "." + (i >>> 8 & 0xff) + "." + (i & 0xff)
+                : "2001:db8:" + Integer.toHexString(i >>> 16) + ":" + Integer.toHexString(i & 0xffff) + "::1";
+    }
+
+    private static long usedHeapAfterGc() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return MEMORY.getHeapMemoryUsage().getUsed();
+    }
+}
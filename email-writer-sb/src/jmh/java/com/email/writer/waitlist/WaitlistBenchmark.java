@@ -0,0 +1,128 @@
+package com.email.writer.waitlist;
+
+import com.email.writer.EmailWriterSbApplication;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Waitlist join and position lookup against a seeded in-memory H2 table.
+ * checkByCount repeats what a position lookup used to cost: load the entry
+ * by email, then COUNT everything that signed up before it. join is the
+ * acknowledged path (the row is written later, in a batch); joinAndFlush
+ * also writes it, one row per flush, as the worst case for write-behind.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WaitlistBenchmark {
+
+    private static final int SEED_BATCH_SIZE = 10_000;
+    private static final LocalDateTime SEED_START = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+    @Param({"1000000"})
+    private int entries;
+
+    private ConfigurableApplicationContext context;
+    private WaitlistService waitlistService;
+    private WaitlistRepository waitlistRepository;
+    private WaitlistIngestion waitlistIngestion;
+    private JdbcTemplate jdbcTemplate;
+    private final AtomicLong joins = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(EmailWriterSbApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=jdbc:h2:mem:waitlist-benchmark;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+                        "--app.rate-limit.persistence.enabled=false",
+                        "--gemini.api.url=http://127.0.0.1:9/unused", "--gemini.api.key=unused",
+                        "--logging.level.root=WARN");
+        waitlistService = context.getBean(WaitlistService.class);
+        waitlistRepository = context.getBean(WaitlistRepository.class);
+        waitlistIngestion = context.getBean(WaitlistIngestion.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+
+        List<Object[]> batch = new ArrayList<>(SEED_BATCH_SIZE);
+        for (int i = 0; i < entries; i++) {
+            batch.add(new Object[]{i + 1L, "Seeded " + i, email(i), Timestamp.valueOf(SEED_START.plusSeconds(i)),
+                    "website", false, i + 1L});
+            if (batch.size() == SEED_BATCH_SIZE || i == entries - 1) {
+                jdbcTemplate.batchUpdate("INSERT INTO waitlist_entries "
+                        + "(id, name, email, created_at, source, notified, queue_position) VALUES (?, ?, ?, ?, ?, ?, ?)",
+                        batch);
+                batch.clear();
+            }
+        }
+        // Seeded behind the sequence's back, so let it pick up from the new maximum
+        context.getBean(WaitlistSequence.class).init();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    private static String email(long i) {
+        return "user" + i + "@example.com";
+    }
+
+    private String randomSeededEmail() {
+        return email(ThreadLocalRandom.current().nextInt(entries));
+    }
+
+    private long positionByCount(String email) {
+        WaitlistEntry entry = waitlistRepository.findByEmail(email).orElseThrow();
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM waitlist_entries WHERE created_at < ?",
+                Long.class, Timestamp.valueOf(entry.getCreatedAt())) + 1;
+    }
+
+    @Benchmark
+    public long checkByCount() {
+        return positionByCount(randomSeededEmail());
+    }
+
+    @Benchmark
+    public long check() {
+        return waitlistService.findWaitlistPosition(randomSeededEmail()).orElseThrow();
+    }
+
+    @Benchmark
+    public long join() {
+        WaitlistEntry saved = waitlistService.addToWaitlist(
+                new WaitlistEntry("Benchmark", email(entries + joins.incrementAndGet()), "website"));
+        return saved.getPosition();
+    }
+
+    @Benchmark
+    public long joinAndFlush() {
+        long position = join();
+        waitlistIngestion.flush();
+        return position;
+    }
+}
@@ -0,0 +1,34 @@
+package com.email.writer;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.validation.constraints.NotEmpty;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class BatchEmailRequest {
+
+    // Items are validated one by one so a bad item fails alone, not the whole batch
+    @NotEmpty(message = "Batch must contain at least one email")
+    @JsonProperty("requests")
+    private List<EmailRequest> requests = new ArrayList<>();
+
+    public BatchEmailRequest() {}
+
+    public BatchEmailRequest(List<EmailRequest> requests) {
+        this.requests = requests;
+    }
+
+    public List<EmailRequest> getRequests() {
+        return requests;
+    }
+
+    public void setRequests(List<EmailRequest> requests) {
+        this.requests = requests;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchEmailRequest{size=" + (requests != null ? requests.size() : 0) + '}';
+    }
+}
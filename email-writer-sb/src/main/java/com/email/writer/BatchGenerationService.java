@@ -0,0 +1,247 @@
+package com.email.writer;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiConsumer;
+import java.util.function.IntConsumer;
+import java.util.stream.Collectors;
+
+/**
+ * Runs a list of EmailRequests concurrently, at most gemini.batch.parallelism at
+ * a time. Items are started as earlier ones complete, so no thread sits waiting
+ * for a free slot; each item gets its own success or error result.
+ */
+@Service
+public class BatchGenerationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchGenerationService.class);
+
+    private final EmailGeneratorService emailGeneratorService;
+    private final Validator validator;
+
+    @Value("${gemini.batch.max-size:20}")
+    private int maxBatchSize;
+
+    @Value("${gemini.batch.parallelism:4}")
+    private int parallelism;
+
+    @Value("${gemini.batch.timeout-ms:120000}")
+    private long timeoutMs;
+
+    public BatchGenerationService(EmailGeneratorService emailGeneratorService, Validator validator) {
+        this.emailGeneratorService = emailGeneratorService;
+        this.validator = validator;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * Validation error for a single item, or null if it can be generated.
+     */
+    public String validate(EmailRequest request) {
+        if (request == null) {
+            return "Request cannot be null";
+        }
+        Set<ConstraintViolation<EmailRequest>> violations = validator.validate(request);
+        if (!violations.isEmpty()) {
+            return violations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining("; "));
+        }
+        if (!request.isValid()) {
+            return "Email content cannot be empty and must be less than 5000 characters";
+        }
+        return null;
+    }
+
+    public int countValid(List<EmailRequest> requests) {
+        int valid = 0;
+        for (EmailRequest request : requests) {
+            if (validate(request) == null) {
+                valid++;
+            }
+        }
+        return valid;
+    }
+
+    // Token estimate for the items that will actually be generated
+    public int estimateTokens(List<EmailRequest> requests) {
+        int tokens = 0;
+        for (EmailRequest request : requests) {
+            if (validate(request) == null) {
+                tokens += emailGeneratorService.estimateTokens(request);
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Generates every item and returns the results in request order.
+     */
+    public List<Map<String, Object>> generateAll(List<EmailRequest> requests) {
+        return generateAll(requests, tokens -> { });
+    }
+
+    /**
+     * Like {@link #generateAll(List)}, reporting Gemini tokens to onTokens.
+     * Once the batch timeout passes, items not started yet are skipped and
+     * tokens from items still running are no longer reported, so nothing
+     * reaches onTokens after this returns.
+     */
+    public List<Map<String, Object>> generateAll(List<EmailRequest> requests, IntConsumer onTokens) {
+        AtomicReferenceArray<Map<String, Object>> results = new AtomicReferenceArray<>(requests.size());
+        BatchRun run = start(requests, results::set, onTokens);
+
+        try {
+            run.done.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            logger.warn("Batch of {} timed out after {}ms", requests.size(), timeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.error("Batch generation failed: {}", e.getMessage(), e);
+        } finally {
+            run.closed = true;
+        }
+
+        List<Map<String, Object>> ordered = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            Map<String, Object> result = results.get(i);
+            ordered.add(result != null ? result : errorResult(i, "Timed out waiting for reply"));
+        }
+        return ordered;
+    }
+
+    public CompletableFuture<Void> generateEach(List<EmailRequest> requests,
+                                                BiConsumer<Integer, Map<String, Object>> onResult) {
+        return generateEach(requests, onResult, tokens -> { });
+    }
+
+    /**
+     * Generates every item, handing each result to onResult (with its index)
+     * in completion order and the Gemini tokens spent to onTokens. The
+     * returned future completes after the last one.
+     */
+    public CompletableFuture<Void> generateEach(List<EmailRequest> requests,
+                                                BiConsumer<Integer, Map<String, Object>> onResult,
+                                                IntConsumer onTokens) {
+        return start(requests, onResult, onTokens).done;
+    }
+
+    private BatchRun start(List<EmailRequest> requests, BiConsumer<Integer, Map<String, Object>> onResult,
+                           IntConsumer onTokens) {
+        BatchRun run = new BatchRun(requests, onResult, onTokens);
+        if (requests.isEmpty()) {
+            run.done.complete(null);
+            return run;
+        }
+        int initial = Math.min(Math.max(parallelism, 1), requests.size());
+        for (int i = 0; i < initial; i++) {
+            launchNext(run);
+        }
+        return run;
+    }
+
+    private void launchNext(BatchRun run) {
+        if (run.closed) {
+            return;
+        }
+        int index = run.next.getAndIncrement();
+        if (index >= run.requests.size()) {
+            return;
+        }
+
+        EmailRequest request = run.requests.get(index);
+        String validationError = validate(request);
+        if (validationError != null) {
+            finish(run, errorResult(index, validationError));
+            return;
+        }
+
+        emailGeneratorService.generateEmailReplyAsync(request, run::reportTokens).whenComplete((reply, error) -> {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error;
+                logger.warn("Batch item {} failed: {}", index, cause.getMessage());
+                finish(run, errorResult(index, cause instanceof TimeoutException
+                        ? "Timed out waiting for reply" : "Failed to generate email reply"));
+            } else {
+                Map<String, Object> result = new HashMap<>();
+                result.put("index", index);
+                result.put("success", true);
+                result.put("reply", reply.trim());
+                result.put("tone", request.getSafeTone());
+                finish(run, result);
+            }
+        });
+    }
+
+    private void finish(BatchRun run, Map<String, Object> result) {
+        try {
+            // After the caller gave up, late results would be neither billed nor returned
+            if (!run.closed) {
+                run.onResult.accept((Integer) result.get("index"), result);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Batch result consumer failed: {}", e.getMessage());
+        }
+        if (run.remaining.decrementAndGet() == 0) {
+            run.done.complete(null);
+        } else {
+            launchNext(run);
+        }
+    }
+
+    private Map<String, Object> errorResult(int index, String error) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("index", index);
+        result.put("success", false);
+        result.put("error", error);
+        return result;
+    }
+
+    private static final class BatchRun {
+        private final List<EmailRequest> requests;
+        private final BiConsumer<Integer, Map<String, Object>> onResult;
+        private final IntConsumer onTokens;
+        private final AtomicInteger next = new AtomicInteger();
+        private final AtomicInteger remaining;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        // Set once the caller has stopped waiting for the batch
+        private volatile boolean closed;
+
+        private BatchRun(List<EmailRequest> requests, BiConsumer<Integer, Map<String, Object>> onResult,
+                         IntConsumer onTokens) {
+            this.requests = requests;
+            this.onResult = onResult;
+            this.onTokens = onTokens;
+            this.remaining = new AtomicInteger(requests.size());
+        }
+
+        private void reportTokens(int tokens) {
+            if (!closed) {
+                onTokens.accept(tokens);
+            }
+        }
+    }
+}
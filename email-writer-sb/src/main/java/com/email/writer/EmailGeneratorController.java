@@ -1,17 +1,34 @@
 package com.email.writer;
 
+import com.email.writer.ratelimit.ApiUsageResponse;
+import com.email.writer.ratelimit.ClientClassifier;
+import com.email.writer.ratelimit.ClientIdentity;
+import com.email.writer.ratelimit.ClientIpResolver;
+import com.email.writer.ratelimit.RateLimitHeaders;
 import com.email.writer.ratelimit.RateLimitingService;
+import com.email.writer.ratelimit.UsageCharge;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Mono;
 
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @RestController
 @RequestMapping("/api/email")
@@ -27,16 +44,36 @@ public class EmailGeneratorController {
     @Autowired
     private EmailGeneratorService emailGeneratorService;
 
+    @Autowired
+    private ReactiveEmailGeneratorService reactiveEmailGeneratorService;
+
+    @Autowired
+    private BatchGenerationService batchGenerationService;
+
     @Autowired
     private RateLimitingService rateLimitingService;
 
+    @Autowired
+    private ClientClassifier clientClassifier;
+
+    @Autowired
+    private ClientIpResolver clientIpResolver;
+
+    @Autowired
+    private TaskExecutor geminiTaskExecutor;
+
+    @Value("${gemini.api.stream-timeout-ms:120000}")
+    private long streamTimeoutMs;
+
     @PostMapping("/generate-reply")
     public ResponseEntity<Map<String, Object>> generateEmailReply(
             @Valid @RequestBody EmailRequest request,
-            HttpServletRequest httpRequest) {
+            HttpServletRequest httpRequest,
+            HttpServletResponse httpResponse) {
 
-        String clientIp = getClientIpAddress(httpRequest);
+        String clientIp = clientIpResolver.resolve(httpRequest);
         logger.info("Received email generation request from IP: {}", clientIp);
+        ClientIdentity client = clientClassifier.classify(httpRequest, clientIp);
         logger.info("Request details - Tone: '{}', Custom Prompt Length: {}, Email Content Length: {}",
                 request.getSafeTone(),
                 request.getSafeCustomPrompt().length(),
@@ -45,21 +82,6 @@ public class EmailGeneratorController {
         Map<String, Object> response = new HashMap<>();
 
         try {
-            // Check rate limit BEFORE processing
-            if (!rateLimitingService.isAllowed(clientIp)) {
-                logger.warn("Rate limit exceeded for IP: {}", clientIp);
-
-                response.put("success", false);
-                response.put("error", "Rate limit exceeded");
-                response.put("message", "You've reached your daily limit of 5 API calls. Please try again tomorrow.");
-
-                // Add current usage info
-                Map<String, Object> usageInfo = rateLimitingService.getUsageInfo(clientIp);
-                response.putAll(usageInfo);
-
-                return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(response);
-            }
-
             // Validate request
             if (!request.isValid()) {
                 logger.warn("Invalid request received: {}", request);
@@ -74,12 +96,32 @@ public class EmailGeneratorController {
                     request.getSafeTone(),
                     !request.getSafeCustomPrompt().isEmpty());
 
-            // Record usage AFTER validation but BEFORE generation
-            rateLimitingService.recordUsage(clientIp);
+            if (request.wantsVariants()) {
+                return generateEmailVariants(request, client, clientIp, httpResponse);
+            }
+
+            // Check and record usage in one step, AFTER validation but BEFORE generation
+            UsageCharge charge = rateLimitingService.charge(client, 1, emailGeneratorService.estimateTokens(request));
+            RateLimitHeaders.apply(httpResponse, charge.decision());
+            if (!charge.allowed()) {
+                logger.warn("Rate limit exceeded for IP: {}", clientIp);
+
+                response.put("success", false);
+                response.put("error", "Rate limit exceeded");
+                response.put("message", charge.rejectionMessage());
+                charge.putUsageInfo(response);
+
+                return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(response);
+            }
             logger.info("Rate limit consumed for IP: {}", clientIp);
 
-            // Generate the reply
-            String generatedReply = emailGeneratorService.generateEmailReply(request);
+            // Generate the reply, then swap the token reservation for what Gemini reported
+            String generatedReply;
+            try {
+                generatedReply = emailGeneratorService.generateEmailReply(request, charge);
+            } finally {
+                charge.settle();
+            }
 
             if (generatedReply == null || generatedReply.trim().isEmpty()) {
                 logger.error("Generated reply is empty");
@@ -95,8 +137,7 @@ public class EmailGeneratorController {
             response.put("timestamp", System.currentTimeMillis());
 
             // Add current usage information
-            Map<String, Object> usageInfo = rateLimitingService.getUsageInfo(clientIp);
-            response.putAll(usageInfo);
+            charge.putUsageInfo(response);
 
             logger.info("Successfully generated email reply for IP: {} with tone: '{}'",
                     clientIp, request.getSafeTone());
@@ -128,6 +169,385 @@ public class EmailGeneratorController {
         }
     }
 
+    // Several tones and/or candidates: charged one call per tone, since that is one upstream request each
+    private ResponseEntity<Map<String, Object>> generateEmailVariants(EmailRequest request, ClientIdentity client, String clientIp,
+                                                                      HttpServletResponse httpResponse) {
+        Map<String, Object> response = new HashMap<>();
+        int calls = request.getVariantTones().size();
+
+        UsageCharge charge = rateLimitingService.charge(client, calls, emailGeneratorService.estimateTokens(request));
+        RateLimitHeaders.apply(httpResponse, charge.decision());
+        if (!charge.allowed()) {
+            logger.warn("Rate limit exceeded for IP: {} ({} tones)", clientIp, calls);
+
+            response.put("success", false);
+            response.put("error", "Rate limit exceeded");
+            response.put("message", charge.decision().remaining() >= calls
+                    ? charge.rejectionMessage()
+                    : "This request needs " + calls + " calls, which exceeds your remaining daily limit.");
+            charge.putUsageInfo(response);
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(response);
+        }
+        logger.info("Rate limit consumed for IP: {} ({} calls)", clientIp, calls);
+
+        List<Map<String, Object>> variants = null;
+        try {
+            variants = emailGeneratorService.generateEmailVariants(request, charge);
+        } finally {
+            // Tones that failed or timed out made no reply, so their calls come back
+            charge.refund(calls - answeredTones(variants));
+            charge.settle();
+        }
+        Map<String, Object> first = variants.get(0);
+
+        response.put("success", true);
+        response.put("reply", first.get("reply"));
+        response.put("tone", first.get("tone"));
+        response.put("replies", variants);
+        response.put("timestamp", System.currentTimeMillis());
+        charge.putUsageInfo(response);
+
+        logger.info("Successfully generated {} reply variants for IP: {}", variants.size(), clientIp);
+        return ResponseEntity.ok(response);
+    }
+
+    private static int answeredTones(List<Map<String, Object>> variants) {
+        return variants == null ? 0 : (int) variants.stream().map(variant -> variant.get("tone")).distinct().count();
+    }
+
+    // Tones and candidates are only served by generate-reply; elsewhere they would be silently dropped
+    private static Map<String, Object> variantsNotSupported() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", false);
+        response.put("error", "Invalid request parameters");
+        response.put("details", "tones and candidateCount are only supported by /api/email/generate-reply");
+        return response;
+    }
+
+    /**
+     * Non-blocking variant of generate-reply: the request thread is released while
+     * Gemini works and the response is written when the Mono completes.
+     */
+    @PostMapping("/generate-reply/reactive")
+    public Mono<ResponseEntity<Map<String, Object>>> generateEmailReplyReactive(
+            @Valid @RequestBody EmailRequest request,
+            HttpServletRequest httpRequest,
+            HttpServletResponse httpResponse) {
+
+        String clientIp = clientIpResolver.resolve(httpRequest);
+        logger.info("Received reactive generation request from IP: {}", clientIp);
+        ClientIdentity client = clientClassifier.classify(httpRequest, clientIp);
+
+        if (!request.isValid()) {
+            logger.warn("Invalid request received: {}", request);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("error", "Invalid email content provided");
+            response.put("details", "Email content cannot be empty and must be less than 5000 characters");
+            return Mono.just(ResponseEntity.badRequest().body(response));
+        }
+        if (request.wantsVariants()) {
+            return Mono.just(ResponseEntity.badRequest().body(variantsNotSupported()));
+        }
+
+        UsageCharge charge = rateLimitingService.charge(client, 1, emailGeneratorService.estimateTokens(request));
+        RateLimitHeaders.apply(httpResponse, charge.decision());
+        if (!charge.allowed()) {
+            logger.warn("Rate limit exceeded for IP: {}", clientIp);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("error", "Rate limit exceeded");
+            response.put("message", charge.rejectionMessage());
+            charge.putUsageInfo(response);
+            return Mono.just(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(response));
+        }
+        logger.info("Rate limit consumed for IP: {}", clientIp);
+
+        return reactiveEmailGeneratorService.generateEmailReply(request, charge)
+                .doFinally(signal -> charge.settle())
+                .map(generatedReply -> {
+                    Map<String, Object> response = new HashMap<>();
+                    response.put("success", true);
+                    response.put("reply", generatedReply.trim());
+                    response.put("tone", request.getSafeTone());
+                    response.put("timestamp", System.currentTimeMillis());
+                    charge.putUsageInfo(response);
+                    return ResponseEntity.ok(response);
+                })
+                .onErrorResume(e -> {
+                    logger.error("Error generating reactive email reply for IP {}: {}", clientIp, e.getMessage(), e);
+
+                    Map<String, Object> response = new HashMap<>();
+                    response.put("success", false);
+                    response.put("error", "Failed to generate email reply");
+                    response.put("details", "An error occurred while processing your request. Please try again.");
+                    return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response));
+                });
+    }
+
+    /**
+     * Streaming variant of generate-reply. Emits "chunk" events as Gemini produces
+     * text and a final "done" event carrying the full reply and usage info, or an
+     * "error" event if generation fails part-way.
+     */
+    @PostMapping(value = "/generate-reply/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamEmailReply(
+            @Valid @RequestBody EmailRequest request,
+            HttpServletRequest httpRequest,
+            HttpServletResponse httpResponse) {
+
+        String clientIp = clientIpResolver.resolve(httpRequest);
+        logger.info("Received streaming generation request from IP: {}", clientIp);
+        ClientIdentity client = clientClassifier.classify(httpRequest, clientIp);
+
+        SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+
+        if (!request.isValid()) {
+            logger.warn("Invalid request received: {}", request);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("error", "Invalid email content provided");
+            response.put("details", "Email content cannot be empty and must be less than 5000 characters");
+
+            sendAndComplete(emitter, "error", response);
+            return ResponseEntity.badRequest().body(emitter);
+        }
+        if (request.wantsVariants()) {
+            sendAndComplete(emitter, "error", variantsNotSupported());
+            return ResponseEntity.badRequest().body(emitter);
+        }
+
+        UsageCharge charge = rateLimitingService.charge(client, 1, emailGeneratorService.estimateTokens(request));
+        RateLimitHeaders.apply(httpResponse, charge.decision());
+        if (!charge.allowed()) {
+            logger.warn("Rate limit exceeded for IP: {}", clientIp);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("error", "Rate limit exceeded");
+            response.put("message", charge.rejectionMessage());
+            charge.putUsageInfo(response);
+
+            sendAndComplete(emitter, "error", response);
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(emitter);
+        }
+        logger.info("Rate limit consumed for IP: {}", clientIp);
+
+        try {
+            geminiTaskExecutor.execute(() -> streamReply(request, charge, emitter, clientIp));
+        } catch (RejectedExecutionException e) {
+            // Nothing was generated, so the call and the token reservation are given back
+            logger.warn("No streaming worker free for IP {}: {}", clientIp, e.getMessage());
+            charge.refund(1);
+            charge.settle();
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("error", "Server busy");
+            response.put("details", "Too many replies are being generated right now. Please try again shortly.");
+            charge.putUsageInfo(response);
+
+            sendAndComplete(emitter, "error", response);
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(emitter);
+        }
+
+        return ResponseEntity.ok(emitter);
+    }
+
+    // Runs on a Gemini worker: forwards chunks as they arrive, then the final "done" or "error" event
+    private void streamReply(EmailRequest request, UsageCharge charge, SseEmitter emitter, String clientIp) {
+        try {
+            String generatedReply = emailGeneratorService.streamEmailReply(request, chunk -> {
+                try {
+                    emitter.send(SseEmitter.event().name("chunk").data(Map.of("text", chunk)));
+                } catch (IOException e) {
+                    // Client went away - abort the upstream read
+                    throw new UncheckedIOException(e);
+                }
+            }, charge);
+            charge.settle();
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("reply", generatedReply);
+            response.put("tone", request.getSafeTone());
+            response.put("timestamp", System.currentTimeMillis());
+            charge.putUsageInfo(response);
+
+            sendAndComplete(emitter, "done", response);
+            logger.info("Successfully streamed email reply for IP: {}", clientIp);
+
+        } catch (RuntimeException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                // The service reported the tokens spent up to the abort, so settle to those
+                charge.settle();
+                logger.info("Client {} disconnected during streaming", clientIp);
+                emitter.complete();
+                return;
+            }
+            charge.settle();
+            logger.error("Error streaming email reply for IP {}: {}", clientIp, e.getMessage(), e);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("error", "Failed to generate email reply");
+            response.put("details", "An error occurred while processing your request. Please try again.");
+
+            sendAndComplete(emitter, "error", response);
+        }
+    }
+
+    /**
+     * Generates replies for several emails in one call. Calls are charged for all
+     * valid items up front, atomically; results come back in request order with
+     * a per-item success flag.
+     */
+    @PostMapping("/generate-replies")
+    public ResponseEntity<Map<String, Object>> generateEmailReplies(
+            @Valid @RequestBody BatchEmailRequest batchRequest,
+            HttpServletRequest httpRequest,
+            HttpServletResponse httpResponse) {
+
+        String clientIp = clientIpResolver.resolve(httpRequest);
+        ClientIdentity client = clientClassifier.classify(httpRequest, clientIp);
+        List<EmailRequest> requests = batchRequest.getRequests();
+        logger.info("Received batch of {} generation requests from IP: {}", requests.size(), clientIp);
+
+        BatchCharge batch = chargeBatch(requests, client, clientIp, httpResponse);
+        if (batch.rejection() != null) {
+            return batch.rejection();
+        }
+
+        List<Map<String, Object>> results = null;
+        long succeeded = 0;
+        try {
+            results = batchGenerationService.generateAll(requests, batch.charge());
+            succeeded = results.stream().filter(result -> Boolean.TRUE.equals(result.get("success"))).count();
+        } finally {
+            // Items that failed or timed out made no reply, so their calls come back
+            batch.charge().refund(batch.calls() - (int) succeeded);
+            batch.charge().settle();
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", succeeded > 0);
+        response.put("results", results);
+        response.put("count", results.size());
+        response.put("succeeded", succeeded);
+        response.put("failed", results.size() - succeeded);
+        response.put("timestamp", System.currentTimeMillis());
+        batch.charge().putUsageInfo(response);
+
+        logger.info("Batch for IP {} finished: {}/{} succeeded", clientIp, succeeded, results.size());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Streaming variant of generate-replies: one "result" event per item as it
+     * completes (carrying its index), then a "done" event with usage info.
+     */
+    @PostMapping(value = "/generate-replies/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamEmailReplies(
+            @Valid @RequestBody BatchEmailRequest batchRequest,
+            HttpServletRequest httpRequest,
+            HttpServletResponse httpResponse) {
+
+        String clientIp = clientIpResolver.resolve(httpRequest);
+        ClientIdentity client = clientClassifier.classify(httpRequest, clientIp);
+        List<EmailRequest> requests = batchRequest.getRequests();
+        logger.info("Received streaming batch of {} generation requests from IP: {}", requests.size(), clientIp);
+
+        SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+
+        BatchCharge batch = chargeBatch(requests, client, clientIp, httpResponse);
+        if (batch.rejection() != null) {
+            sendAndComplete(emitter, "error", batch.rejection().getBody());
+            return ResponseEntity.status(batch.rejection().getStatusCode()).body(emitter);
+        }
+
+        AtomicInteger succeeded = new AtomicInteger();
+        batchGenerationService.generateEach(requests, (index, result) -> {
+            if (Boolean.TRUE.equals(result.get("success"))) {
+                succeeded.incrementAndGet();
+            }
+            try {
+                emitter.send(SseEmitter.event().name("result").data(result));
+            } catch (IOException e) {
+                logger.debug("Client {} disconnected during batch stream: {}", clientIp, e.getMessage());
+            }
+        }, batch.charge()).whenComplete((ignored, error) -> {
+            batch.charge().refund(batch.calls() - succeeded.get());
+            batch.charge().settle();
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", error == null);
+            response.put("count", requests.size());
+            response.put("timestamp", System.currentTimeMillis());
+            batch.charge().putUsageInfo(response);
+            sendAndComplete(emitter, "done", response);
+        });
+
+        return ResponseEntity.ok(emitter);
+    }
+
+    // Either the charge for a batch that can run, or the error response for one that can't
+    private record BatchCharge(UsageCharge charge, int calls, ResponseEntity<Map<String, Object>> rejection) {
+    }
+
+    // Charges the batch's valid items in one step
+    private BatchCharge chargeBatch(List<EmailRequest> requests, ClientIdentity client, String clientIp,
+                                    HttpServletResponse httpResponse) {
+        if (requests.size() > batchGenerationService.getMaxBatchSize()) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("error", "Batch too large");
+            response.put("details", "A batch can contain at most " + batchGenerationService.getMaxBatchSize() + " emails");
+            return new BatchCharge(null, 0, ResponseEntity.badRequest().body(response));
+        }
+        if (requests.stream().anyMatch(EmailRequest::wantsVariants)) {
+            return new BatchCharge(null, 0, ResponseEntity.badRequest().body(variantsNotSupported()));
+        }
+
+        int validCount = batchGenerationService.countValid(requests);
+        if (validCount == 0) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("error", "Invalid email content provided");
+            response.put("details", "No email in the batch has valid content");
+            return new BatchCharge(null, 0, ResponseEntity.badRequest().body(response));
+        }
+
+        UsageCharge charge = rateLimitingService.charge(client, validCount,
+                batchGenerationService.estimateTokens(requests));
+        RateLimitHeaders.apply(httpResponse, charge.decision());
+        if (!charge.allowed()) {
+            logger.warn("Rate limit exceeded for IP: {} (batch of {})", clientIp, validCount);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("error", "Rate limit exceeded");
+            response.put("message", charge.decision().remaining() >= validCount
+                    ? charge.rejectionMessage()
+                    : "This batch needs " + validCount + " calls, which exceeds your remaining daily limit.");
+            charge.putUsageInfo(response);
+            return new BatchCharge(null, 0, ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(response));
+        }
+        return new BatchCharge(charge, validCount, null);
+    }
+
+    private void sendAndComplete(SseEmitter emitter, String eventName, Map<String, Object> payload) {
+        try {
+            emitter.send(SseEmitter.event().name(eventName).data(payload));
+            emitter.complete();
+        } catch (IOException e) {
+            logger.debug("Could not send '{}' event, client disconnected: {}", eventName, e.getMessage());
+            emitter.completeWithError(e);
+        }
+    }
+
     @GetMapping("/health")
     public ResponseEntity<Map<String, Object>> healthCheck() {
         Map<String, Object> response = new HashMap<>();
@@ -158,36 +578,38 @@ public class EmailGeneratorController {
         return ResponseEntity.ok(response);
     }
 
+    @GetMapping("/metrics")
+    public ResponseEntity<Map<String, Object>> getMetrics() {
+        Map<String, Object> response = emailGeneratorService.getMetrics();
+        response.put("reactive", reactiveEmailGeneratorService.getStats());
+        response.put("success", true);
+        response.put("timestamp", System.currentTimeMillis());
+        return ResponseEntity.ok(response);
+    }
+
     // New endpoint to get usage info without consuming
     @GetMapping("/usage")
-    public ResponseEntity<Map<String, Object>> getUsageInfo(HttpServletRequest request) {
-        String clientIp = getClientIpAddress(request);
+    public ResponseEntity<ApiUsageResponse> getUsageInfo(HttpServletRequest request, HttpServletResponse httpResponse) {
+        String clientIp = clientIpResolver.resolve(request);
+        ClientIdentity client = clientClassifier.classify(request, clientIp);
 
         try {
-            Map<String, Object> response = rateLimitingService.getUsageInfo(clientIp);
-            response.put("success", true);
-            response.put("clientIp", clientIp); // For debugging
-
-            return ResponseEntity.ok(response);
+            ApiUsageResponse usage = rateLimitingService.getUsageInfo(client);
+            RateLimitHeaders.apply(httpResponse, usage);
+            // clientIp is included for debugging
+            return ResponseEntity.ok(usage.withClientIp(clientIp));
         } catch (Exception e) {
             logger.error("Error getting usage info for IP: {}", clientIp, e);
 
-            Map<String, Object> errorResponse = new HashMap<>();
-            errorResponse.put("success", false);
-            errorResponse.put("error", "Unable to get usage info");
-            errorResponse.put("currentUsage", 0);
-            errorResponse.put("remainingCalls", 5);
-            errorResponse.put("maxCalls", 5);
-            errorResponse.put("canMakeCall", true);
-
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiUsageResponse.unavailable("Unable to get usage info", rateLimitingService.getQuota(client)));
         }
     }
 
     // Exception handler for validation errors
     @ExceptionHandler(Exception.class)
     public ResponseEntity<Map<String, Object>> handleGlobalException(Exception e, HttpServletRequest request) {
-        String clientIp = getClientIpAddress(request);
+        String clientIp = clientIpResolver.resolve(request);
         logger.error("Unhandled exception for IP {}: {}", clientIp, e.getMessage(), e);
 
         Map<String, Object> response = new HashMap<>();
@@ -198,26 +620,12 @@ public class EmailGeneratorController {
         return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
     }
 
-    private String getClientIpAddress(HttpServletRequest request) {
-        String xForwardedFor = request.getHeader("X-Forwarded-For");
-        if (xForwardedFor != null && !xForwardedFor.isEmpty()) {
-            return xForwardedFor.split(",")[0].trim();
-        }
-
-        String xRealIp = request.getHeader("X-Real-IP");
-        if (xRealIp != null && !xRealIp.isEmpty()) {
-            return xRealIp;
-        }
-
-        return request.getRemoteAddr();
-    }
-
     @RequestMapping(method = RequestMethod.OPTIONS)
     public ResponseEntity<Void> handleOptions() {
         return ResponseEntity.ok()
                 .header("Access-Control-Allow-Origin", "*")
                 .header("Access-Control-Allow-Methods", "GET, POST, OPTIONS")
-                .header("Access-Control-Allow-Headers", "Content-Type, Authorization, X-Requested-With")
+                .header("Access-Control-Allow-Headers", "Content-Type, Authorization, X-Requested-With, X-API-Key, X-Extension-Id")
                 .header("Access-Control-Max-Age", "3600")
                 .build();
     }
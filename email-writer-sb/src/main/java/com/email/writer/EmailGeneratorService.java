@@ -1,24 +1,45 @@
 package com.email.writer;
 
+import com.email.writer.GeminiCodec.Candidate;
+import com.email.writer.GeminiCodec.GeminiResponse;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.core5.http.ConnectionRequestTimeoutException;
+import org.apache.hc.core5.pool.PoolStats;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
 
 @Service
 public class EmailGeneratorService {
 
     private static final Logger logger = LoggerFactory.getLogger(EmailGeneratorService.class);
+    private static final IntConsumer NO_TOKEN_TRACKING = tokens -> { };
+
+    // Rough prompt size in tokens for English text, used only to reserve token budget up front
+    private static final int CHARS_PER_TOKEN = 4;
 
     @Value("${gemini.api.key}")
     private String apiKey;
@@ -26,43 +47,406 @@ public class EmailGeneratorService {
     @Value("${gemini.api.url}")
     private String apiUrl;
 
-    private final RestTemplate restTemplate;
+    // Defaults to apiUrl with :generateContent swapped for :streamGenerateContent
+    @Value("${gemini.api.stream-url:}")
+    private String streamUrl;
+
+    @Value("${gemini.api.temperature:0.7}")
+    private double temperature;
+
+    // Upper bound for candidateCount sent to Gemini (the API allows up to 8)
+    @Value("${gemini.api.max-candidates:4}")
+    private int maxCandidates;
 
-    public EmailGeneratorService() {
-        this.restTemplate = new RestTemplate();
+    @Value("${gemini.api.variants-timeout-ms:60000}")
+    private long variantsTimeoutMs;
+
+    private final RestTemplate restTemplate;
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final GeminiCodec geminiCodec;
+    private final ReplyCache replyCache;
+    private final InFlightGenerations inFlightGenerations;
+    private final TaskExecutor geminiTaskExecutor;
+
+    // Upstream calls that failed because no pooled connection freed up in time
+    private final AtomicLong poolAcquireTimeouts = new AtomicLong();
+
+    // Caps calls in flight to Gemini, whatever the number of request threads (virtual or not)
+    private final GeminiCallPermits callPermits;
+
+    public EmailGeneratorService(@Qualifier("geminiRestTemplate") RestTemplate restTemplate,
+                                 PoolingHttpClientConnectionManager connectionManager,
+                                 GeminiCodec geminiCodec,
+                                 ReplyCache replyCache,
+                                 InFlightGenerations inFlightGenerations,
+                                 @Qualifier("geminiTaskExecutor") TaskExecutor geminiTaskExecutor,
+                                 GeminiCallPermits callPermits) {
+        this.restTemplate = restTemplate;
+        this.connectionManager = connectionManager;
+        this.geminiCodec = geminiCodec;
+        this.replyCache = replyCache;
+        this.inFlightGenerations = inFlightGenerations;
+        this.geminiTaskExecutor = geminiTaskExecutor;
+        this.callPermits = callPermits;
     }
 
     public String generateEmailReply(EmailRequest request) {
+        return generateEmailReply(request, NO_TOKEN_TRACKING);
+    }
+
+    /**
+     * Generates a reply, reporting the Gemini tokens spent on it to onTokens.
+     * Cache hits and replies shared with an identical in-flight call cost
+     * nothing.
+     */
+    public String generateEmailReply(EmailRequest request, IntConsumer onTokens) {
         try {
             logger.info("Generating email reply with tone: {} and custom prompt: {}",
                     request.getTone(), request.getCustomPrompt());
 
             String prompt = buildDynamicPrompt(request);
-            String fullUrl = buildApiUrl(); // Fixed method
+            String promptKey = replyCache.keyFor(prompt);
+            boolean cacheable = isCacheable(request);
+            if (cacheable) {
+                String cachedReply = replyCache.get(promptKey);
+                if (cachedReply != null) {
+                    logger.info("Serving email reply from cache");
+                    return cachedReply;
+                }
+            }
+
+            // Identical prompts already in flight share that upstream call, unless a fresh reply was asked for
+            return inFlightGenerations.execute(coalescingKey(request, promptKey),
+                    upstreamCall(prompt, promptKey, cacheable, onTokens));
+
+        } catch (Exception e) {
+            logger.error("Error generating email reply", e);
+            throw new RuntimeException("Failed to generate email reply: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Non-blocking form of generateEmailReply, used to fan out batches without
+     * holding a thread per item. Cache hits complete immediately.
+     */
+    public CompletableFuture<String> generateEmailReplyAsync(EmailRequest request) {
+        return generateEmailReplyAsync(request, NO_TOKEN_TRACKING);
+    }
+
+    public CompletableFuture<String> generateEmailReplyAsync(EmailRequest request, IntConsumer onTokens) {
+        try {
+            String prompt = buildDynamicPrompt(request);
+            String promptKey = replyCache.keyFor(prompt);
+            boolean cacheable = isCacheable(request);
+            if (cacheable) {
+                String cachedReply = replyCache.get(promptKey);
+                if (cachedReply != null) {
+                    return CompletableFuture.completedFuture(cachedReply);
+                }
+            }
+
+            return inFlightGenerations.submit(coalescingKey(request, promptKey),
+                    upstreamCall(prompt, promptKey, cacheable, onTokens));
+
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Generates several variants of the reply in one round trip of latency: one
+     * upstream call per requested tone, all running in parallel, each asking
+     * Gemini for candidateCount alternatives. Single-candidate tones go through
+     * the cache and coalescing like a normal generation. Returns one entry per
+     * variant ({tone, candidate, reply}) in tone order; tones that fail are
+     * dropped as long as at least one variant was produced.
+     */
+    public List<Map<String, Object>> generateEmailVariants(EmailRequest request) {
+        return generateEmailVariants(request, NO_TOKEN_TRACKING);
+    }
+
+    public List<Map<String, Object>> generateEmailVariants(EmailRequest request, IntConsumer onTokens) {
+        List<String> tones = request.getVariantTones();
+        int candidateCount = effectiveCandidateCount(request);
+        logger.info("Generating {} candidate(s) for tones {}", candidateCount, tones);
+
+        List<CompletableFuture<List<String>>> futures = new ArrayList<>();
+        for (String tone : tones) {
+            EmailRequest toneRequest = new EmailRequest(request.getEmailContent(), tone, request.getCustomPrompt());
+            toneRequest.setBypassCache(request.isBypassCache());
+
+            if (candidateCount == 1) {
+                futures.add(generateEmailReplyAsync(toneRequest, onTokens).thenApply(List::of));
+            } else {
+                String prompt = buildDynamicPrompt(toneRequest);
+                try {
+                    futures.add(CompletableFuture.supplyAsync(
+                            () -> callGeminiForCandidates(prompt, candidateCount, onTokens), geminiTaskExecutor));
+                } catch (RuntimeException e) {
+                    futures.add(CompletableFuture.failedFuture(e));
+                }
+            }
+        }
+
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                    .get(variantsTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while generating reply variants");
+        } catch (TimeoutException e) {
+            logger.warn("Reply variants not complete after {}ms, returning what finished", variantsTimeoutMs);
+        } catch (ExecutionException e) {
+            // Individual failures are handled per tone below
+        }
+
+        List<Map<String, Object>> variants = new ArrayList<>();
+        for (int i = 0; i < tones.size(); i++) {
+            CompletableFuture<List<String>> future = futures.get(i);
+            if (!future.isDone() || future.isCompletedExceptionally()) {
+                logger.warn("No reply generated for tone '{}'", tones.get(i));
+                continue;
+            }
+            List<String> replies = future.join();
+            for (int candidate = 0; candidate < replies.size(); candidate++) {
+                Map<String, Object> variant = new HashMap<>();
+                variant.put("tone", tones.get(i));
+                variant.put("candidate", candidate);
+                variant.put("reply", replies.get(candidate));
+                variants.add(variant);
+            }
+        }
+
+        if (variants.isEmpty()) {
+            throw new RuntimeException("Failed to generate any reply variant");
+        }
+        return variants;
+    }
+
+    /**
+     * Upper estimate of the tokens a request will spend: its prompt(s) plus
+     * the full output allowance of every candidate, for reserving token
+     * budget before the real count is known.
+     */
+    public int estimateTokens(EmailRequest request) {
+        int promptTokens = buildDynamicPrompt(request).length() / CHARS_PER_TOKEN;
+        if (!request.wantsVariants()) {
+            return promptTokens + GeminiCodec.MAX_OUTPUT_TOKENS;
+        }
+        return request.getVariantTones().size()
+                * (promptTokens + effectiveCandidateCount(request) * GeminiCodec.MAX_OUTPUT_TOKENS);
+    }
+
+    private int effectiveCandidateCount(EmailRequest request) {
+        return Math.min(request.getSafeCandidateCount(), Math.min(maxCandidates, GeminiCodec.MAX_CANDIDATE_COUNT));
+    }
+
+    private Supplier<String> upstreamCall(String prompt, String promptKey, boolean cacheable, IntConsumer onTokens) {
+        return () -> {
+            String reply = callGemini(prompt, onTokens);
+            if (cacheable) {
+                replyCache.put(promptKey, reply);
+            }
+            return reply;
+        };
+    }
+
+    private String callGemini(String prompt, IntConsumer onTokens) {
+        logger.debug("Generated prompt: {}", prompt);
+        GeminiResponse response = postToGemini(geminiCodec.encodeRequest(prompt));
+        reportUsage(response, onTokens);
+        return extractResponseText(response);
+    }
+
+    private List<String> callGeminiForCandidates(String prompt, int candidateCount, IntConsumer onTokens) {
+        logger.debug("Generated prompt ({} candidates): {}", candidateCount, prompt);
+        GeminiResponse response = postToGemini(geminiCodec.encodeRequest(prompt, candidateCount));
+        reportUsage(response, onTokens);
+        return extractResponseTexts(response);
+    }
+
+    void reportUsage(GeminiResponse response, IntConsumer onTokens) {
+        if (response != null && response.usage() != null) {
+            logger.debug("Gemini token usage: {}", response.usage());
+            onTokens.accept(response.usage().totalTokenCount());
+        }
+    }
+
+    private GeminiResponse postToGemini(byte[] requestBody) {
+        String fullUrl = buildApiUrl(); // Fixed method
+
+        logger.info("Making request to: {}", cleanUrlForLogging(fullUrl));
+        callPermits.acquire();
+        GeminiResponse response;
+        try {
+            // Decoded straight off the connection's input stream, no intermediate Map
+            response = restTemplate.execute(fullUrl, HttpMethod.POST,
+                    clientRequest -> {
+                        clientRequest.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+                        clientRequest.getHeaders().setContentLength(requestBody.length);
+                        clientRequest.getBody().write(requestBody);
+                    },
+                    clientResponse -> {
+                        logger.info("Received response with status: {}", clientResponse.getStatusCode());
+                        return geminiCodec.decodeResponse(clientResponse.getBody());
+                    });
+        } catch (RuntimeException e) {
+            if (hasCause(e, ConnectionRequestTimeoutException.class)) {
+                poolAcquireTimeouts.incrementAndGet();
+                logger.warn("Gemini connection pool exhausted: {}", connectionManager.getTotalStats());
+            }
+            throw e;
+        } finally {
+            callPermits.release();
+        }
+        return response;
+    }
 
-            logger.info("Attempting to call Gemini API with URL: {}", cleanUrlForLogging(fullUrl));
-            logger.debug("Generated prompt: {}", prompt);
+    /**
+     * Streams the reply through Gemini's streamGenerateContent (SSE) endpoint,
+     * handing each text chunk to onChunk as soon as it is read off the wire.
+     * Returns the full concatenated reply once the upstream stream ends.
+     */
+    public String streamEmailReply(EmailRequest request, Consumer<String> onChunk) {
+        return streamEmailReply(request, onChunk, NO_TOKEN_TRACKING);
+    }
 
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
+    public String streamEmailReply(EmailRequest request, Consumer<String> onChunk, IntConsumer onTokens) {
+        try {
+            logger.info("Streaming email reply with tone: {}", request.getSafeTone());
 
-            Map<String, Object> requestBody = createGeminiRequestBody(prompt);
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody, headers);
+            String prompt = buildDynamicPrompt(request);
+            String cacheKey = isCacheable(request) ? replyCache.keyFor(prompt) : null;
+            if (cacheKey != null) {
+                String cachedReply = replyCache.get(cacheKey);
+                if (cachedReply != null) {
+                    logger.info("Serving streamed email reply from cache");
+                    onChunk.accept(cachedReply);
+                    return cachedReply;
+                }
+            }
 
-            logger.info("Making request to: {}", cleanUrlForLogging(fullUrl));
-            ResponseEntity<Map> response = restTemplate.exchange(fullUrl, HttpMethod.POST, entity, Map.class);
-            logger.info("Received response with status: {}", response.getStatusCode());
+            String fullUrl = buildStreamApiUrl();
+            byte[] body = geminiCodec.encodeRequest(prompt);
+
+            logger.info("Making streaming request to: {}", cleanUrlForLogging(fullUrl));
+            callPermits.acquire();
+            String reply;
+            try {
+                reply = restTemplate.execute(fullUrl, HttpMethod.POST,
+                        clientRequest -> {
+                            clientRequest.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+                            clientRequest.getHeaders().setAccept(List.of(MediaType.TEXT_EVENT_STREAM));
+                            clientRequest.getBody().write(body);
+                        },
+                        clientResponse -> {
+                            StringBuilder fullText = new StringBuilder();
+                            // Each chunk's usageMetadata is cumulative, so only the last one counts
+                            GeminiResponse lastWithUsage = null;
+                            try (BufferedReader reader = new BufferedReader(
+                                    new InputStreamReader(clientResponse.getBody(), StandardCharsets.UTF_8))) {
+                                String line;
+                                while ((line = reader.readLine()) != null) {
+                                    if (!line.startsWith("data:")) {
+                                        continue;
+                                    }
+                                    GeminiResponse decoded = geminiCodec.decodeResponse(line.substring(5).trim());
+                                    if (decoded.usage() != null) {
+                                        lastWithUsage = decoded;
+                                    }
+                                    String chunk = extractChunkText(decoded);
+                                    if (!chunk.isEmpty()) {
+                                        fullText.append(chunk);
+                                        onChunk.accept(chunk);
+                                    }
+                                }
+                            } catch (UncheckedIOException e) {
+                                // The caller stopped reading: report Gemini's count so far, else estimate what was spent
+                                if (lastWithUsage != null) {
+                                    reportUsage(lastWithUsage, onTokens);
+                                } else {
+                                    onTokens.accept((prompt.length() + fullText.length()) / CHARS_PER_TOKEN);
+                                }
+                                throw e;
+                            }
+                            reportUsage(lastWithUsage, onTokens);
+                            return fullText.toString();
+                        });
+            } finally {
+                callPermits.release();
+            }
 
-            return extractResponseText(response.getBody());
+            if (reply == null || reply.trim().isEmpty()) {
+                throw new RuntimeException("Empty text in API response");
+            }
+            if (cacheKey != null) {
+                replyCache.put(cacheKey, reply.trim());
+            }
+            return reply.trim();
 
         } catch (Exception e) {
-            logger.error("Error generating email reply", e);
-            throw new RuntimeException("Failed to generate email reply: " + e.getMessage());
+            if (hasCause(e, ConnectionRequestTimeoutException.class)) {
+                poolAcquireTimeouts.incrementAndGet();
+                logger.warn("Gemini connection pool exhausted: {}", connectionManager.getTotalStats());
+            }
+            if (e instanceof UncheckedIOException) {
+                // The client went away and the caller aborted the read; not a failure of ours
+                logger.debug("Streaming aborted by the caller: {}", e.getMessage());
+            } else {
+                logger.error("Error streaming email reply", e);
+            }
+            throw new RuntimeException("Failed to stream email reply: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Connection pool saturation figures, used to size gemini.api.pool.*
+     */
+    public Map<String, Object> getMetrics() {
+        PoolStats stats = connectionManager.getTotalStats();
+
+        Map<String, Object> pool = new HashMap<>();
+        pool.put("leased", stats.getLeased());
+        pool.put("pending", stats.getPending());
+        pool.put("available", stats.getAvailable());
+        pool.put("max", stats.getMax());
+        pool.put("maxPerRoute", connectionManager.getDefaultMaxPerRoute());
+        pool.put("utilization", stats.getMax() > 0 ? (double) stats.getLeased() / stats.getMax() : 0.0);
+        pool.put("acquireTimeouts", poolAcquireTimeouts.get());
+
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("httpPool", pool);
+        metrics.put("replyCache", replyCache.getStats());
+        metrics.put("coalescing", inFlightGenerations.getStats());
+
+        Map<String, Object> concurrency = new HashMap<>();
+        concurrency.put("maxConcurrentCalls", callPermits.getMaxConcurrentCalls());
+        concurrency.put("availablePermits", callPermits.getAvailable());
+        concurrency.put("waiting", callPermits.getWaiting());
+        concurrency.put("rejections", callPermits.getRejections());
+        metrics.put("upstreamConcurrency", concurrency);
+        return metrics;
+    }
+
+    private static String coalescingKey(EmailRequest request, String promptKey) {
+        return request.isBypassCache() ? null : promptKey;
+    }
+
+    boolean isCacheable(EmailRequest request) {
+        return !request.isBypassCache() && replyCache.isCacheable(temperature);
+    }
+
+    private static boolean hasCause(Throwable e, Class<? extends Throwable> type) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (type.isInstance(t)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     // Fixed URL construction method
-    private String buildApiUrl() {
+    String buildApiUrl() {
         // Remove any existing query parameters from apiUrl to avoid duplicates
         String cleanUrl = apiUrl.contains("?") ? apiUrl.split("\\?")[0] : apiUrl;
         String fullUrl = cleanUrl + "?key=" + apiKey;
@@ -71,19 +455,27 @@ public class EmailGeneratorService {
         return fullUrl;
     }
 
+    private String buildStreamApiUrl() {
+        String baseUrl = streamUrl != null && !streamUrl.isBlank()
+                ? streamUrl
+                : apiUrl.replace(":generateContent", ":streamGenerateContent");
+        String cleanUrl = baseUrl.contains("?") ? baseUrl.split("\\?")[0] : baseUrl;
+        return cleanUrl + "?alt=sse&key=" + apiKey;
+    }
+
     // Helper method to clean URL for logging (hide API key)
-    private String cleanUrlForLogging(String url) {
+    String cleanUrlForLogging(String url) {
         return url.replaceAll("key=[^&]*", "key=[REDACTED]");
     }
 
-    private String buildDynamicPrompt(EmailRequest request) {
+    String buildDynamicPrompt(EmailRequest request) {
         StringBuilder promptBuilder = new StringBuilder();
 
         // Base instructions
         promptBuilder.append("You are SmartReply+, an AI email assistant. Generate a professional email reply for the following email content. ");
 
         // Dynamic tone mapping
-        String toneInstructions = getToneInstructions(request.getTone());
+        String toneInstructions = getToneInstructions(request.getSafeTone());
         promptBuilder.append(toneInstructions);
 
         // Important guidelines
@@ -95,21 +487,22 @@ public class EmailGeneratorService {
         promptBuilder.append("- Make sure the reply addresses the main points of the original email ");
 
         // Add custom prompt if provided
-        if (request.getCustomPrompt() != null && !request.getCustomPrompt().trim().isEmpty()) {
+        String customPrompt = request.getSafeCustomPrompt();
+        if (!customPrompt.isEmpty()) {
             promptBuilder.append("\n\nAdditional Style Instructions: ");
-            promptBuilder.append(request.getCustomPrompt().trim());
+            promptBuilder.append(customPrompt);
         }
 
-        // Add original email content
+        // Add original email content (trimmed so whitespace-only differences share a cache key)
         promptBuilder.append("\n\nOriginal Email Content:\n");
-        promptBuilder.append(request.getEmailContent());
+        promptBuilder.append(request.getEmailContent().trim());
 
         promptBuilder.append("\n\nGenerate only the email reply body (no subject line):");
 
         return promptBuilder.toString();
     }
 
-    private String getToneInstructions(String tone) {
+    String getToneInstructions(String tone) {
         if (tone == null || tone.trim().isEmpty()) {
             tone = "professional";
         }
@@ -136,88 +529,48 @@ public class EmailGeneratorService {
         }
     }
 
-    private Map<String, Object> createGeminiRequestBody(String prompt) {
-        Map<String, Object> requestBody = new HashMap<>();
-
-        // Create the parts array with the prompt
-        Map<String, String> textPart = new HashMap<>();
-        textPart.put("text", prompt);
-
-        Map<String, Object> part = new HashMap<>();
-        part.put("parts", List.of(textPart));
-
-        requestBody.put("contents", List.of(part));
-
-        // Generation configuration for better responses
-        Map<String, Object> generationConfig = new HashMap<>();
-        generationConfig.put("temperature", 0.7);
-        generationConfig.put("topK", 40);
-        generationConfig.put("topP", 0.95);
-        generationConfig.put("maxOutputTokens", 1024);
-
-        requestBody.put("generationConfig", generationConfig);
-
-        // Safety settings to prevent blocking
-        List<Map<String, Object>> safetySettings = List.of(
-                createSafetySetting("HARM_CATEGORY_HARASSMENT", "BLOCK_NONE"),
-                createSafetySetting("HARM_CATEGORY_HATE_SPEECH", "BLOCK_NONE"),
-                createSafetySetting("HARM_CATEGORY_SEXUALLY_EXPLICIT", "BLOCK_NONE"),
-                createSafetySetting("HARM_CATEGORY_DANGEROUS_CONTENT", "BLOCK_NONE")
-        );
-
-        requestBody.put("safetySettings", safetySettings);
-
-        return requestBody;
+    // Stream chunks may legitimately carry no text (e.g. the final chunk with only finishReason)
+    private String extractChunkText(GeminiResponse chunk) {
+        if (chunk.candidates().isEmpty()) {
+            return "";
+        }
+        String text = chunk.candidates().get(0).text();
+        return text != null ? text : "";
     }
 
-    private Map<String, Object> createSafetySetting(String category, String threshold) {
-        Map<String, Object> setting = new HashMap<>();
-        setting.put("category", category);
-        setting.put("threshold", threshold);
-        return setting;
+    String extractResponseText(GeminiResponse response) {
+        return extractResponseTexts(response).get(0);
     }
 
-    @SuppressWarnings("unchecked")
-    private String extractResponseText(Map<String, Object> responseBody) {
-        try {
-            if (responseBody == null) {
-                throw new RuntimeException("Empty response from Gemini API");
-            }
-
-            List<Map<String, Object>> candidates = (List<Map<String, Object>>) responseBody.get("candidates");
-            if (candidates == null || candidates.isEmpty()) {
-                logger.error("No candidates in response: {}", responseBody);
-                throw new RuntimeException("No candidates in API response");
-            }
-
-            Map<String, Object> firstCandidate = candidates.get(0);
-            Map<String, Object> content = (Map<String, Object>) firstCandidate.get("content");
-
-            if (content == null) {
-                logger.error("No content in candidate: {}", firstCandidate);
-                throw new RuntimeException("No content in API response");
-            }
-
-            List<Map<String, Object>> parts = (List<Map<String, Object>>) content.get("parts");
-            if (parts == null || parts.isEmpty()) {
-                logger.error("No parts in content: {}", content);
-                throw new RuntimeException("No parts in API response");
-            }
+    /**
+     * Returns the text of every usable candidate, in the order Gemini returned
+     * them. Candidates without text (e.g. stopped by a safety filter) are
+     * skipped; if none is usable the first candidate's problem is reported.
+     */
+    List<String> extractResponseTexts(GeminiResponse response) {
+        if (response == null) {
+            throw new RuntimeException("Failed to extract response text: Empty response from Gemini API");
+        }
+        if (response.candidates().isEmpty()) {
+            logger.error("No candidates in response: {}", response);
+            throw new RuntimeException("Failed to extract response text: No candidates in API response");
+        }
 
-            String text = (String) parts.get(0).get("text");
-            if (text == null || text.trim().isEmpty()) {
-                throw new RuntimeException("Empty text in API response");
+        List<String> texts = new ArrayList<>();
+        for (Candidate candidate : response.candidates()) {
+            if (candidate.text() != null && !candidate.text().trim().isEmpty()) {
+                // Clean up the response text
+                texts.add(candidate.text().trim());
             }
+        }
 
-            // Clean up the response text
-            return text.trim();
-
-        } catch (ClassCastException e) {
-            logger.error("Unexpected response structure: {}", responseBody, e);
-            throw new RuntimeException("Unexpected API response structure");
-        } catch (Exception e) {
-            logger.error("Error extracting response text: {}", responseBody, e);
-            throw new RuntimeException("Failed to extract response text: " + e.getMessage());
+        if (texts.isEmpty()) {
+            Candidate first = response.candidates().get(0);
+            logger.error("No usable text in any candidate: {}", response);
+            throw new RuntimeException(first.text() == null
+                    ? "Failed to extract response text: No content in API response (finishReason=" + first.finishReason() + ")"
+                    : "Failed to extract response text: Empty text in API response");
         }
+        return texts;
     }
-}
\ No newline at end of file
+}
@@ -1,9 +1,14 @@
 package com.email.writer;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class EmailRequest {
 
     @NotBlank(message = "Email content cannot be empty")
@@ -18,6 +23,21 @@ public class EmailRequest {
     @Size(max = 500, message = "Custom prompt cannot exceed 500 characters")
     private String customPrompt;
 
+    // Skip the reply cache and always ask Gemini for a fresh generation
+    @JsonProperty("bypassCache")
+    private boolean bypassCache;
+
+    // Generate one reply per tone in a single request, e.g. ["professional", "friendly"]
+    @JsonProperty("tones")
+    @Size(max = 5, message = "At most 5 tones can be requested at once")
+    private List<String> tones;
+
+    // Alternative replies per tone, served by Gemini's candidateCount in the same call
+    @JsonProperty("candidateCount")
+    @Min(value = 1, message = "Candidate count must be at least 1")
+    @Max(value = 8, message = "Candidate count cannot exceed 8")
+    private Integer candidateCount;
+
     // Default constructor
     public EmailRequest() {}
 
@@ -60,6 +80,30 @@ public class EmailRequest {
         this.customPrompt = customPrompt;
     }
 
+    public boolean isBypassCache() {
+        return bypassCache;
+    }
+
+    public void setBypassCache(boolean bypassCache) {
+        this.bypassCache = bypassCache;
+    }
+
+    public List<String> getTones() {
+        return tones;
+    }
+
+    public void setTones(List<String> tones) {
+        this.tones = tones;
+    }
+
+    public Integer getCandidateCount() {
+        return candidateCount;
+    }
+
+    public void setCandidateCount(Integer candidateCount) {
+        this.candidateCount = candidateCount;
+    }
+
     // Validation method
     public boolean isValid() {
         return emailContent != null &&
@@ -80,6 +124,35 @@ public class EmailRequest {
         return customPrompt != null ? customPrompt.trim() : "";
     }
 
+    // True when the caller asked for several tones and/or several candidates
+    public boolean wantsVariants() {
+        return (tones != null && !tones.isEmpty()) || getSafeCandidateCount() > 1;
+    }
+
+    // Distinct, normalized tones to generate; falls back to the single tone
+    public List<String> getVariantTones() {
+        List<String> variantTones = new ArrayList<>();
+        if (tones != null) {
+            for (String variantTone : tones) {
+                if (variantTone == null || variantTone.trim().isEmpty()) {
+                    continue;
+                }
+                String safeTone = variantTone.toLowerCase().trim();
+                if (!variantTones.contains(safeTone)) {
+                    variantTones.add(safeTone);
+                }
+            }
+        }
+        if (variantTones.isEmpty()) {
+            variantTones.add(getSafeTone());
+        }
+        return variantTones;
+    }
+
+    public int getSafeCandidateCount() {
+        return candidateCount != null && candidateCount > 0 ? candidateCount : 1;
+    }
+
     @Override
     public String toString() {
         return "EmailRequest{" +
@@ -0,0 +1,125 @@
+package com.email.writer;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caps the calls in flight to Gemini at gemini.api.max-concurrent-calls,
+ * across the blocking, streaming and reactive pipelines alike. Slots are
+ * handed out first come, first served; a caller that gets none within the
+ * acquire timeout is refused. The reactive pipeline waits for a slot as a
+ * future, so it holds no thread while queued.
+ */
+@Component
+public class GeminiCallPermits {
+
+    private final int maxConcurrentCalls;
+    private final long acquireTimeoutMs;
+
+    // Guarded by this; a free slot only exists while nobody is queued
+    private int available;
+    private final ArrayDeque<CompletableFuture<Void>> waiters = new ArrayDeque<>();
+
+    private final AtomicLong rejections = new AtomicLong();
+
+    public GeminiCallPermits(@Value("${gemini.api.max-concurrent-calls:64}") int maxConcurrentCalls,
+                             @Value("${gemini.api.concurrency-acquire-timeout-ms:5000}") long acquireTimeoutMs) {
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.acquireTimeoutMs = acquireTimeoutMs;
+        this.available = maxConcurrentCalls;
+    }
+
+    /**
+     * Waits for a slot, throwing if none frees up in time. Give it back with
+     * {@link #release()}.
+     */
+    public void acquire() {
+        CompletableFuture<Void> slot = acquireAsync();
+        try {
+            slot.get();
+        } catch (InterruptedException e) {
+            release(slot);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for a Gemini call slot");
+        } catch (ExecutionException e) {
+            throw (RuntimeException) e.getCause();
+        }
+    }
+
+    /**
+     * A slot that is granted when the future completes, or refused when it
+     * fails after the acquire timeout. Always hand the future back to
+     * {@link #release(CompletableFuture)}, whatever became of it.
+     */
+    public CompletableFuture<Void> acquireAsync() {
+        CompletableFuture<Void> slot;
+        synchronized (this) {
+            if (available > 0) {
+                available--;
+                return CompletableFuture.completedFuture(null);
+            }
+            slot = new CompletableFuture<>();
+            waiters.add(slot);
+        }
+        CompletableFuture.delayedExecutor(acquireTimeoutMs, TimeUnit.MILLISECONDS).execute(() -> {
+            boolean stillQueued;
+            synchronized (this) {
+                stillQueued = waiters.remove(slot);
+            }
+            // Once out of the queue, release() can no longer hand it a slot
+            if (stillQueued && !slot.isDone()) {
+                rejections.incrementAndGet();
+                slot.completeExceptionally(new RuntimeException("Too many concurrent Gemini calls, try again shortly"));
+            }
+        });
+        return slot;
+    }
+
+    /** Gives back a slot from {@link #acquireAsync()}, or stops waiting for it if it was not granted yet. */
+    public void release(CompletableFuture<Void> slot) {
+        // cancel only fails once the slot has completed, and then it was granted unless it failed
+        if (!slot.cancel(false) && !slot.isCompletedExceptionally()) {
+            release();
+        }
+    }
+
+    /** Gives back a granted slot, straight to the longest waiter if there is one. */
+    public void release() {
+        while (true) {
+            CompletableFuture<Void> next;
+            synchronized (this) {
+                next = waiters.poll();
+                if (next == null) {
+                    available++;
+                    return;
+                }
+            }
+            // A waiter that already timed out or gave up loses its turn
+            if (next.complete(null)) {
+                return;
+            }
+        }
+    }
+
+    public int getMaxConcurrentCalls() {
+        return maxConcurrentCalls;
+    }
+
+    public synchronized int getAvailable() {
+        return available;
+    }
+
+    public synchronized int getWaiting() {
+        return waiters.size();
+    }
+
+    public long getRejections() {
+        return rejections.get();
+    }
+}
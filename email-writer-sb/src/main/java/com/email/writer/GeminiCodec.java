@@ -0,0 +1,227 @@
+package com.email.writer;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encodes generateContent requests and decodes their responses without going
+ * through untyped maps.
+ *
+ * Everything in the request except the prompt is constant, so the
+ * generationConfig/safetySettings tail is serialized once per candidate count
+ * at startup and appended as raw bytes. Responses are read with a streaming
+ * JsonParser that keeps only candidate text, finishReason and usageMetadata
+ * and skips everything else without materializing it.
+ */
+@Component
+public class GeminiCodec {
+
+    static final int MAX_CANDIDATE_COUNT = 8;
+    static final int MAX_OUTPUT_TOKENS = 1024;
+
+    private static final int REQUEST_BUFFER_SIZE = 2048;
+
+    private static final SafetySetting[] SAFETY_SETTINGS = {
+            new SafetySetting("HARM_CATEGORY_HARASSMENT", "BLOCK_NONE"),
+            new SafetySetting("HARM_CATEGORY_HATE_SPEECH", "BLOCK_NONE"),
+            new SafetySetting("HARM_CATEGORY_SEXUALLY_EXPLICIT", "BLOCK_NONE"),
+            new SafetySetting("HARM_CATEGORY_DANGEROUS_CONTENT", "BLOCK_NONE")
+    };
+
+    private final JsonFactory jsonFactory;
+
+    // requestTails[n] = ,"generationConfig":{...},"safetySettings":[...] for candidateCount n
+    private final SerializedString[] requestTails = new SerializedString[MAX_CANDIDATE_COUNT + 1];
+
+    public GeminiCodec(ObjectMapper objectMapper,
+                       @Value("${gemini.api.temperature:0.7}") double temperature) {
+        this.jsonFactory = objectMapper.getFactory();
+
+        for (int candidateCount = 1; candidateCount <= MAX_CANDIDATE_COUNT; candidateCount++) {
+            GenerationConfig generationConfig = new GenerationConfig(
+                    temperature, 40, 0.95, MAX_OUTPUT_TOKENS, candidateCount > 1 ? candidateCount : null);
+            try {
+                String json = objectMapper.writeValueAsString(new RequestTail(generationConfig, List.of(SAFETY_SETTINGS)));
+                // Drop the enclosing braces; the tail is spliced into the request object
+                requestTails[candidateCount] = new SerializedString("," + json.substring(1, json.length() - 1));
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not serialize Gemini request settings", e);
+            }
+        }
+    }
+
+    public byte[] encodeRequest(String prompt) {
+        return encodeRequest(prompt, 1);
+    }
+
+    public byte[] encodeRequest(String prompt, int candidateCount) {
+        if (candidateCount < 1 || candidateCount > MAX_CANDIDATE_COUNT) {
+            throw new IllegalArgumentException("candidateCount must be between 1 and " + MAX_CANDIDATE_COUNT);
+        }
+
+        // Sized for a typical prompt plus the tail; grows in chunks for longer ones
+        ByteArrayBuilder out = new ByteArrayBuilder(REQUEST_BUFFER_SIZE);
+        try (JsonGenerator generator = jsonFactory.createGenerator(out)) {
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("contents");
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("parts");
+            generator.writeStartObject();
+            generator.writeStringField("text", prompt);
+            generator.writeEndObject();
+            generator.writeEndArray();
+            generator.writeEndObject();
+            generator.writeEndArray();
+            generator.writeRaw(requestTails[candidateCount]);
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    public GeminiResponse decodeResponse(InputStream body) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            return readResponse(parser);
+        }
+    }
+
+    public GeminiResponse decodeResponse(byte[] body) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            return readResponse(parser);
+        }
+    }
+
+    public GeminiResponse decodeResponse(String body) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            return readResponse(parser);
+        }
+    }
+
+    private GeminiResponse readResponse(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Gemini response is not a JSON object");
+        }
+
+        List<Candidate> candidates = new ArrayList<>(1);
+        Usage usage = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("candidates".equals(field) && value == JsonToken.START_ARRAY) {
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    candidates.add(readCandidate(parser));
+                }
+            } else if ("usageMetadata".equals(field) && value == JsonToken.START_OBJECT) {
+                usage = readUsage(parser);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return new GeminiResponse(candidates, usage);
+    }
+
+    private Candidate readCandidate(JsonParser parser) throws IOException {
+        StringBuilder text = null;
+        String finishReason = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("content".equals(field) && value == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String contentField = parser.currentName();
+                    if (parser.nextToken() == JsonToken.START_ARRAY && "parts".equals(contentField)) {
+                        text = readParts(parser, text);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else if ("finishReason".equals(field) && value == JsonToken.VALUE_STRING) {
+                finishReason = parser.getText();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return new Candidate(text != null ? text.toString() : null, finishReason);
+    }
+
+    private StringBuilder readParts(JsonParser parser, StringBuilder text) throws IOException {
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                if (parser.nextToken() == JsonToken.VALUE_STRING && "text".equals(field)) {
+                    if (text == null) {
+                        text = new StringBuilder();
+                    }
+                    text.append(parser.getText());
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return text;
+    }
+
+    private Usage readUsage(JsonParser parser) throws IOException {
+        int promptTokens = 0;
+        int candidatesTokens = 0;
+        int totalTokens = 0;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (value != JsonToken.VALUE_NUMBER_INT) {
+                parser.skipChildren();
+                continue;
+            }
+            switch (field) {
+                case "promptTokenCount" -> promptTokens = parser.getIntValue();
+                case "candidatesTokenCount" -> candidatesTokens = parser.getIntValue();
+                case "totalTokenCount" -> totalTokens = parser.getIntValue();
+                default -> { }
+            }
+        }
+        return new Usage(promptTokens, candidatesTokens, totalTokens);
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    record GenerationConfig(double temperature, int topK, double topP, int maxOutputTokens, Integer candidateCount) {
+    }
+
+    record SafetySetting(String category, String threshold) {
+    }
+
+    record RequestTail(GenerationConfig generationConfig, List<SafetySetting> safetySettings) {
+    }
+
+    /**
+     * One generated candidate; text is the concatenation of all its text parts
+     * (Gemini may split a reply across several), or null when Gemini returned
+     * no content, e.g. when the candidate was stopped by a safety filter.
+     */
+    public record Candidate(String text, String finishReason) {
+    }
+
+    public record Usage(int promptTokenCount, int candidatesTokenCount, int totalTokenCount) {
+    }
+
+    /**
+     * The parts of a generateContent response this service uses; usage is null
+     * when the response carried no usageMetadata.
+     */
+    public record GeminiResponse(List<Candidate> candidates, Usage usage) {
+    }
+}
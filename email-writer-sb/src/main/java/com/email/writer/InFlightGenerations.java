@@ -0,0 +1,166 @@
+package com.email.writer;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight layer for Gemini calls. Concurrent callers with the same prompt
+ * key share one upstream CompletableFuture; the first caller (the leader) makes
+ * the call and everyone else just waits on it. A blocking leader makes it on
+ * its own thread, so only duplicates ever wait. Each follower waits on its own
+ * copy of the shared future, so one caller timing out or being interrupted
+ * never cancels the upstream call for the others.
+ *
+ * A null key runs the call on its own, neither joining nor joinable.
+ */
+@Component
+public class InFlightGenerations {
+
+    private static final Logger logger = LoggerFactory.getLogger(InFlightGenerations.class);
+
+    private final Map<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+    private final TaskExecutor executor;
+    private final boolean enabled;
+    private final long waitTimeoutMs;
+
+    private final AtomicLong upstreamCalls = new AtomicLong();
+    private final AtomicLong coalescedCalls = new AtomicLong();
+    private final AtomicLong waitTimeouts = new AtomicLong();
+
+    public InFlightGenerations(@Qualifier("geminiTaskExecutor") TaskExecutor executor,
+                               @Value("${gemini.coalesce.enabled:true}") boolean enabled,
+                               @Value("${gemini.coalesce.wait-timeout-ms:60000}") long waitTimeoutMs) {
+        this.executor = executor;
+        this.enabled = enabled;
+        this.waitTimeoutMs = waitTimeoutMs;
+    }
+
+    /**
+     * Returns the result of upstream for this key, joining an identical call
+     * that is already in flight instead of starting a new one.
+     */
+    public String execute(String key, Supplier<String> upstream) {
+        if (!enabled || key == null) {
+            upstreamCalls.incrementAndGet();
+            return upstream.get();
+        }
+
+        CompletableFuture<String> created = new CompletableFuture<>();
+        CompletableFuture<String> shared = inFlight.putIfAbsent(key, created);
+        if (shared != null) {
+            coalescedCalls.incrementAndGet();
+            logger.info("Coalesced generation onto in-flight request");
+            return await(shared.copy());
+        }
+
+        // Leader: call on this thread and hand the outcome to anyone who joined meanwhile
+        upstreamCalls.incrementAndGet();
+        try {
+            String reply = upstream.get();
+            created.complete(reply);
+            return reply;
+        } catch (Throwable t) {
+            created.completeExceptionally(t);
+            throw t;
+        } finally {
+            inFlight.remove(key, created);
+        }
+    }
+
+    /**
+     * Non-blocking form of {@link #execute}: the upstream call always runs on the
+     * executor and the caller gets its own future, bounded by the wait timeout.
+     */
+    public CompletableFuture<String> submit(String key, Supplier<String> upstream) {
+        if (!enabled || key == null) {
+            CompletableFuture<String> future = new CompletableFuture<>();
+            upstreamCalls.incrementAndGet();
+            startUpstream(null, future, upstream);
+            return future.orTimeout(waitTimeoutMs, TimeUnit.MILLISECONDS);
+        }
+        return join(key, upstream).orTimeout(waitTimeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    // Returns a caller-owned copy of the shared future for this key, starting the call if needed
+    private CompletableFuture<String> join(String key, Supplier<String> upstream) {
+        CompletableFuture<String> created = new CompletableFuture<>();
+        CompletableFuture<String> shared = inFlight.putIfAbsent(key, created);
+
+        if (shared == null) {
+            shared = created;
+            upstreamCalls.incrementAndGet();
+            startUpstream(key, created, upstream);
+        } else {
+            coalescedCalls.incrementAndGet();
+            logger.info("Coalesced generation onto in-flight request");
+        }
+
+        return shared.copy();
+    }
+
+    private void startUpstream(String key, CompletableFuture<String> future, Supplier<String> upstream) {
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(upstream.get());
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                } finally {
+                    if (key != null) {
+                        inFlight.remove(key, future);
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            // Executor saturated - fail this key now rather than leave waiters hanging
+            if (key != null) {
+                inFlight.remove(key, future);
+            }
+            future.completeExceptionally(e);
+        }
+    }
+
+    private String await(CompletableFuture<String> mine) {
+        try {
+            return mine.get(waitTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            waitTimeouts.incrementAndGet();
+            mine.cancel(false);
+            throw new RuntimeException("Timed out waiting for Gemini response after " + waitTimeoutMs + "ms");
+        } catch (InterruptedException e) {
+            mine.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for Gemini response");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new RuntimeException(cause.getMessage(), cause);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("inFlight", inFlight.size());
+        stats.put("upstreamCalls", upstreamCalls.get());
+        stats.put("coalescedCalls", coalescedCalls.get());
+        stats.put("waitTimeouts", waitTimeouts.get());
+        return stats;
+    }
+}
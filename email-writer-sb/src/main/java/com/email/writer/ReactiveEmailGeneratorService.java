@@ -0,0 +1,176 @@
+package com.email.writer;
+
+import com.email.writer.GeminiCodec.GeminiResponse;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+
+/**
+ * Non-blocking variant of {@link EmailGeneratorService}. Shares prompt building,
+ * the request/response codec and the reply cache with the blocking service, but
+ * talks to Gemini through WebClient so no thread is held while waiting.
+ *
+ * Each attempt holds one of the {@link GeminiCallPermits} slots shared with
+ * the blocking service, waiting for it without a thread. Transient failures
+ * (connect errors, 429, 5xx) are retried with jittered exponential backoff
+ * inside an overall deadline. Cancelling the returned Mono,
+ * e.g. when the HTTP client disconnects, cancels the in-flight upstream call.
+ */
+@Service
+public class ReactiveEmailGeneratorService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveEmailGeneratorService.class);
+
+    private final WebClient webClient;
+    private final EmailGeneratorService emailGeneratorService;
+    private final ReplyCache replyCache;
+    private final GeminiCodec geminiCodec;
+    private final GeminiCallPermits callPermits;
+
+    @Value("${gemini.reactive.timeout-ms:60000}")
+    private long timeoutMs;
+
+    @Value("${gemini.reactive.retry.max-retries:2}")
+    private int maxRetries;
+
+    @Value("${gemini.reactive.retry.min-backoff-ms:250}")
+    private long minBackoffMs;
+
+    @Value("${gemini.reactive.retry.max-backoff-ms:2000}")
+    private long maxBackoffMs;
+
+    @Value("${gemini.reactive.retry.jitter:0.5}")
+    private double jitter;
+
+    private final AtomicLong upstreamCalls = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong cancellations = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+
+    public ReactiveEmailGeneratorService(@Qualifier("geminiWebClient") WebClient webClient,
+                                         EmailGeneratorService emailGeneratorService,
+                                         ReplyCache replyCache,
+                                         GeminiCodec geminiCodec,
+                                         GeminiCallPermits callPermits) {
+        this.webClient = webClient;
+        this.emailGeneratorService = emailGeneratorService;
+        this.replyCache = replyCache;
+        this.geminiCodec = geminiCodec;
+        this.callPermits = callPermits;
+    }
+
+    public Mono<String> generateEmailReply(EmailRequest request) {
+        return generateEmailReply(request, tokens -> { });
+    }
+
+    /**
+     * Generates a reply, reporting the Gemini tokens of the successful
+     * attempt to onTokens; retried attempts that failed report nothing.
+     */
+    public Mono<String> generateEmailReply(EmailRequest request, IntConsumer onTokens) {
+        return Mono.defer(() -> {
+            String prompt = emailGeneratorService.buildDynamicPrompt(request);
+            String cacheKey = emailGeneratorService.isCacheable(request) ? replyCache.keyFor(prompt) : null;
+            if (cacheKey != null) {
+                String cachedReply = replyCache.get(cacheKey);
+                if (cachedReply != null) {
+                    logger.info("Serving reactive email reply from cache");
+                    return Mono.just(cachedReply);
+                }
+            }
+
+            String fullUrl = emailGeneratorService.buildApiUrl();
+            byte[] requestBody = geminiCodec.encodeRequest(prompt);
+            logger.info("Making reactive request to: {}", emailGeneratorService.cleanUrlForLogging(fullUrl));
+
+            return withCallPermit(webClient.post()
+                    .uri(fullUrl)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue(requestBody)
+                    .retrieve()
+                    .bodyToMono(byte[].class)
+                    .doOnSubscribe(subscription -> upstreamCalls.incrementAndGet()))
+                    .retryWhen(Retry.backoff(maxRetries, Duration.ofMillis(minBackoffMs))
+                            .maxBackoff(Duration.ofMillis(maxBackoffMs))
+                            .jitter(jitter)
+                            .filter(this::isTransient)
+                            .doBeforeRetry(signal -> {
+                                retries.incrementAndGet();
+                                logger.warn("Retrying Gemini call (attempt {}): {}",
+                                        signal.totalRetries() + 1, signal.failure().getMessage());
+                            })
+                            .onRetryExhaustedThrow((spec, signal) -> signal.failure()))
+                    .timeout(Duration.ofMillis(timeoutMs))
+                    .map(body -> {
+                        try {
+                            GeminiResponse response = geminiCodec.decodeResponse(body);
+                            emailGeneratorService.reportUsage(response, onTokens);
+                            return emailGeneratorService.extractResponseText(response);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException("Unreadable Gemini response", e);
+                        }
+                    })
+                    .doOnNext(reply -> {
+                        if (cacheKey != null) {
+                            replyCache.put(cacheKey, reply);
+                        }
+                    });
+        })
+                .doOnCancel(() -> {
+                    cancellations.incrementAndGet();
+                    logger.info("Reactive generation cancelled, upstream call aborted");
+                })
+                .onErrorMap(TimeoutException.class, e -> {
+                    timeouts.incrementAndGet();
+                    return new RuntimeException("Gemini did not respond within " + timeoutMs + "ms", e);
+                });
+    }
+
+    // Holds a shared call slot for one attempt, given back however the attempt ends, cancellation included
+    private <T> Mono<T> withCallPermit(Mono<T> call) {
+        return Mono.defer(() -> {
+            CompletableFuture<Void> slot = callPermits.acquireAsync();
+            return Mono.fromFuture(slot, true)
+                    .then(call)
+                    .doFinally(signal -> callPermits.release(slot));
+        });
+    }
+
+    private boolean isTransient(Throwable error) {
+        if (error instanceof WebClientRequestException) {
+            return true;
+        }
+        if (error instanceof WebClientResponseException responseException) {
+            int status = responseException.getStatusCode().value();
+            return status == 429 || status >= 500;
+        }
+        return false;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("upstreamCalls", upstreamCalls.get());
+        stats.put("retries", retries.get());
+        stats.put("cancellations", cancellations.get());
+        stats.put("timeouts", timeouts.get());
+        return stats;
+    }
+}
@@ -0,0 +1,118 @@
+package com.email.writer;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded, in-process cache of generated replies keyed by a SHA-256 of the
+ * fully built prompt. The prompt is a pure function of the normalized
+ * (emailContent, tone, customPrompt) tuple, so identical requests share a key.
+ * Entries are evicted LRU once max-entries is reached and expire after ttl.
+ */
+@Component
+public class ReplyCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplyCache.class);
+
+    private final boolean enabled;
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final boolean deterministicOnly;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+
+    private final LinkedHashMap<String, CachedReply> entries;
+
+    private record CachedReply(String reply, long expiresAtNanos) {}
+
+    public ReplyCache(@Value("${gemini.cache.enabled:true}") boolean enabled,
+                      @Value("${gemini.cache.max-entries:1000}") int maxEntries,
+                      @Value("${gemini.cache.ttl-seconds:3600}") long ttlSeconds,
+                      @Value("${gemini.cache.deterministic-only:false}") boolean deterministicOnly) {
+        this.enabled = enabled;
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttlSeconds * 1_000_000_000L;
+        this.deterministicOnly = deterministicOnly;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedReply> eldest) {
+                if (size() > ReplyCache.this.maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+        logger.info("Reply cache: enabled={}, maxEntries={}, ttl={}s, deterministicOnly={}",
+                enabled, maxEntries, ttlSeconds, deterministicOnly);
+    }
+
+    /**
+     * Whether replies generated at this temperature may be cached at all.
+     */
+    public boolean isCacheable(double temperature) {
+        return enabled && (!deterministicOnly || temperature == 0.0);
+    }
+
+    public String keyFor(String prompt) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(prompt.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public String get(String key) {
+        synchronized (entries) {
+            CachedReply cached = entries.get(key);
+            if (cached == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+            if (System.nanoTime() - cached.expiresAtNanos() >= 0) {
+                entries.remove(key);
+                expirations.incrementAndGet();
+                misses.incrementAndGet();
+                return null;
+            }
+            hits.incrementAndGet();
+            return cached.reply();
+        }
+    }
+
+    public void put(String key, String reply) {
+        CachedReply cached = new CachedReply(reply, System.nanoTime() + ttlNanos);
+        synchronized (entries) {
+            entries.put(key, cached);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        synchronized (entries) {
+            stats.put("size", entries.size());
+        }
+        stats.put("enabled", enabled);
+        stats.put("maxEntries", maxEntries);
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("evictions", evictions.get());
+        stats.put("expirations", expirations.get());
+        return stats;
+    }
+}
@@ -0,0 +1,60 @@
+package com.email.writer.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Worker pool for Gemini work that runs off the request thread,
+ * such as forwarding streamed replies to an SSE client or running the
+ * shared upstream call for coalesced generations.
+ *
+ * With spring.threads.virtual.enabled=true on a Java 21+ runtime, Boot moves
+ * Tomcat request handling onto virtual threads and this executor becomes a
+ * virtual-thread-per-task executor as well. Outbound concurrency to Gemini is
+ * then bounded by gemini.api.max-concurrent-calls rather than by pool sizes.
+ */
+@Configuration
+public class GeminiExecutorConfig {
+
+    @Value("${gemini.executor.core-size:8}")
+    private int coreSize;
+
+    @Value("${gemini.executor.max-size:32}")
+    private int maxSize;
+
+    @Value("${gemini.executor.queue-capacity:100}")
+    private int queueCapacity;
+
+    @Bean
+    @ConditionalOnThreading(Threading.PLATFORM)
+    public TaskExecutor geminiTaskExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(coreSize);
+        executor.setMaxPoolSize(maxSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("gemini-");
+        // Saturation surfaces as a rejected task instead of silently queueing forever
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        return executor;
+    }
+
+    @Bean(name = "geminiTaskExecutor")
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public TaskExecutor geminiVirtualTaskExecutor() {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("gemini-vt-");
+        executor.setVirtualThreads(true);
+        executor.setTaskTerminationTimeout(30_000);
+        return executor;
+    }
+}
@@ -0,0 +1,124 @@
+package com.email.writer.config;
+
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.ssl.DefaultClientTlsStrategy;
+import org.apache.hc.core5.http.io.SocketConfig;
+import org.apache.hc.core5.pool.PoolConcurrencyPolicy;
+import org.apache.hc.core5.pool.PoolReusePolicy;
+import org.apache.hc.core5.ssl.SSLContexts;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+
+/**
+ * Outbound HTTP engine for Gemini calls: a bounded, pooled Apache HttpClient
+ * with explicit timeouts instead of the JDK default connection-per-request
+ * factory that a bare {@code new RestTemplate()} uses.
+ */
+@Configuration
+public class GeminiHttpClientConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(GeminiHttpClientConfig.class);
+
+    @Value("${gemini.api.pool.max-total:50}")
+    private int maxTotal;
+
+    @Value("${gemini.api.pool.max-per-route:20}")
+    private int maxPerRoute;
+
+    @Value("${gemini.api.pool.acquire-timeout-ms:2000}")
+    private long acquireTimeoutMs;
+
+    @Value("${gemini.api.pool.idle-evict-ms:30000}")
+    private long idleEvictMs;
+
+    @Value("${gemini.api.pool.time-to-live-ms:300000}")
+    private long timeToLiveMs;
+
+    @Value("${gemini.api.pool.validate-after-inactivity-ms:2000}")
+    private long validateAfterInactivityMs;
+
+    @Value("${gemini.api.connect-timeout-ms:5000}")
+    private long connectTimeoutMs;
+
+    @Value("${gemini.api.read-timeout-ms:30000}")
+    private long readTimeoutMs;
+
+    @Value("${gemini.api.response-timeout-ms:45000}")
+    private long responseTimeoutMs;
+
+    @Value("${gemini.api.tls.session-cache-size:100}")
+    private int tlsSessionCacheSize;
+
+    @Value("${gemini.api.tls.session-timeout-seconds:86400}")
+    private int tlsSessionTimeoutSeconds;
+
+    @Bean(destroyMethod = "close")
+    public PoolingHttpClientConnectionManager geminiConnectionManager() {
+        // One shared SSLContext keeps the client session cache warm, so reconnects
+        // after eviction can resume TLS sessions instead of doing a full handshake
+        SSLContext sslContext = SSLContexts.createSystemDefault();
+        SSLSessionContext sessionContext = sslContext.getClientSessionContext();
+        sessionContext.setSessionCacheSize(tlsSessionCacheSize);
+        sessionContext.setSessionTimeout(tlsSessionTimeoutSeconds);
+
+        ConnectionConfig connectionConfig = ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                .setSocketTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                .setTimeToLive(TimeValue.ofMilliseconds(timeToLiveMs))
+                .setValidateAfterInactivity(TimeValue.ofMilliseconds(validateAfterInactivityMs))
+                .build();
+
+        logger.info("Gemini HTTP pool: maxTotal={}, maxPerRoute={}, connectTimeout={}ms, readTimeout={}ms, responseTimeout={}ms",
+                maxTotal, maxPerRoute, connectTimeoutMs, readTimeoutMs, responseTimeoutMs);
+
+        return PoolingHttpClientConnectionManagerBuilder.create()
+                .setTlsSocketStrategy(new DefaultClientTlsStrategy(sslContext))
+                .setMaxConnTotal(maxTotal)
+                .setMaxConnPerRoute(maxPerRoute)
+                .setPoolConcurrencyPolicy(PoolConcurrencyPolicy.STRICT)
+                .setConnPoolPolicy(PoolReusePolicy.LIFO)
+                .setDefaultConnectionConfig(connectionConfig)
+                .setDefaultSocketConfig(SocketConfig.custom()
+                        .setTcpNoDelay(true)
+                        .setSoKeepAlive(true)
+                        .setSoTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                        .build())
+                .build();
+    }
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient geminiHttpClient(PoolingHttpClientConnectionManager geminiConnectionManager) {
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectionRequestTimeout(Timeout.ofMilliseconds(acquireTimeoutMs))
+                .setResponseTimeout(Timeout.ofMilliseconds(responseTimeoutMs))
+                .build();
+
+        return HttpClients.custom()
+                .setConnectionManager(geminiConnectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofMilliseconds(idleEvictMs))
+                .disableCookieManagement()
+                .build();
+    }
+
+    @Bean
+    public RestTemplate geminiRestTemplate(CloseableHttpClient geminiHttpClient) {
+        return new RestTemplate(new HttpComponentsClientHttpRequestFactory(geminiHttpClient));
+    }
+}
@@ -0,0 +1,80 @@
+package com.email.writer.config;
+
+import io.netty.channel.ChannelOption;
+import io.netty.handler.timeout.ReadTimeoutHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Non-blocking counterpart of {@link GeminiHttpClientConfig}: a WebClient on a
+ * dedicated Reactor Netty connection pool. A pending connection costs no
+ * thread here, so the pool can be far larger than the blocking one.
+ */
+@Configuration
+public class GeminiWebClientConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(GeminiWebClientConfig.class);
+
+    @Value("${gemini.reactive.pool.max-connections:500}")
+    private int maxConnections;
+
+    @Value("${gemini.reactive.pool.max-pending-acquires:1000}")
+    private int maxPendingAcquires;
+
+    @Value("${gemini.api.pool.acquire-timeout-ms:2000}")
+    private long acquireTimeoutMs;
+
+    @Value("${gemini.api.pool.idle-evict-ms:30000}")
+    private long idleEvictMs;
+
+    @Value("${gemini.api.pool.time-to-live-ms:300000}")
+    private long timeToLiveMs;
+
+    @Value("${gemini.api.connect-timeout-ms:5000}")
+    private int connectTimeoutMs;
+
+    @Value("${gemini.api.read-timeout-ms:30000}")
+    private long readTimeoutMs;
+
+    @Value("${gemini.api.response-timeout-ms:45000}")
+    private long responseTimeoutMs;
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider geminiConnectionProvider() {
+        logger.info("Gemini reactive pool: maxConnections={}, maxPendingAcquires={}", maxConnections, maxPendingAcquires);
+
+        return ConnectionProvider.builder("gemini")
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(maxPendingAcquires)
+                .pendingAcquireTimeout(Duration.ofMillis(acquireTimeoutMs))
+                .maxIdleTime(Duration.ofMillis(idleEvictMs))
+                .maxLifeTime(Duration.ofMillis(timeToLiveMs))
+                .evictInBackground(Duration.ofMillis(idleEvictMs))
+                .lifo()
+                .build();
+    }
+
+    @Bean
+    public WebClient geminiWebClient(WebClient.Builder builder, ConnectionProvider geminiConnectionProvider) {
+        HttpClient httpClient = HttpClient.create(geminiConnectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMs)
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .responseTimeout(Duration.ofMillis(responseTimeoutMs))
+                .doOnConnected(connection -> connection.addHandlerLast(
+                        new ReadTimeoutHandler(readTimeoutMs, TimeUnit.MILLISECONDS)));
+
+        return builder
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+    }
+}
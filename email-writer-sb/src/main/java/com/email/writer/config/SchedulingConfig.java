@@ -0,0 +1,12 @@
+package com.email.writer.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Turns on @Scheduled methods, such as the rate limiter's daily rollover.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
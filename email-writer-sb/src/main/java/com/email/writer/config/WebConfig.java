@@ -1,5 +1,6 @@
 package com.email.writer.config;
 
+import com.email.writer.ratelimit.RateLimitHeaders;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
@@ -13,6 +14,7 @@ public class WebConfig implements WebMvcConfigurer {
                 .allowedOriginPatterns("*")
                 .allowedMethods("*")
                 .allowedHeaders("*")
+                .exposedHeaders(RateLimitHeaders.EXPOSED)
                 .allowCredentials(false)
                 .maxAge(3600);
     }
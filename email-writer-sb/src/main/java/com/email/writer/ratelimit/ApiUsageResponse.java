@@ -0,0 +1,38 @@
+package com.email.writer.ratelimit;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.LocalDate;
+
+/**
+ * A client's usage as returned by the usage endpoints. Built straight from a
+ * {@link RateLimitDecision}; error, clientIp and the token fields (for tiers
+ * without a token budget) are left out when null.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ApiUsageResponse(boolean success, String error, int currentUsage, int remainingCalls, int maxCalls,
+                               boolean canMakeCall, LocalDate resetDate, long resetInSeconds, String tier,
+                               Long tokensUsed, Integer tokenBudget, Long remainingTokens, String clientIp) {
+
+    static ApiUsageResponse of(RateLimitDecision decision, QuotaTier tier) {
+        return new ApiUsageResponse(true, null, decision.used(), decision.remaining(), decision.limit(),
+                decision.remaining() > 0, decision.resetDate(), decision.resetInSeconds(), tier.configName(),
+                null, null, null, null);
+    }
+
+    // When usage can't be read the client is not blocked, so report a fresh allowance
+    public static ApiUsageResponse unavailable(String error, Quota quota) {
+        return new ApiUsageResponse(false, error, 0, quota.dailyLimit(), quota.dailyLimit(), true, null, 0, null,
+                null, null, null, null);
+    }
+
+    ApiUsageResponse withTokens(long spent, int budget) {
+        return new ApiUsageResponse(success, error, currentUsage, remainingCalls, maxCalls, canMakeCall, resetDate,
+                resetInSeconds, tier, spent, budget, Math.max(0, budget - spent), clientIp);
+    }
+
+    public ApiUsageResponse withClientIp(String clientIp) {
+        return new ApiUsageResponse(success, error, currentUsage, remainingCalls, maxCalls, canMakeCall, resetDate,
+                resetInSeconds, tier, tokensUsed, tokenBudget, remainingTokens, clientIp);
+    }
+}
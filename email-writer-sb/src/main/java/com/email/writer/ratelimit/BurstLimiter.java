@@ -0,0 +1,98 @@
+package com.email.writer.ratelimit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Clock;
+
+/**
+ * The per-minute part of a {@link Quota}, enforced on this instance only.
+ * Uses the generic cell rate algorithm: each client's state is the time at
+ * which its allowance will be fully back, so a check is one update of one
+ * long. A client spends one emission interval (a minute / perMinute) per
+ * call and may run up to burst intervals ahead of the clock.
+ *
+ * A request larger than the whole burst allowance (a big batch) is let
+ * through when the client is fully caught up and then pays for it in
+ * waiting time, rather than never fitting.
+ *
+ * State lives in hourly generations, so a client idle for an hour or two is
+ * dropped wholesale; bursts are capped to fit within an hour.
+ */
+class BurstLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(BurstLimiter.class);
+    private static final long GENERATION_MILLIS = 3_600_000L;
+    private static final long MINUTE_MILLIS = 60_000L;
+
+    private final GenerationalUsageStore states;
+    private final Clock clock;
+
+    BurstLimiter(Clock clock) {
+        this.clock = clock;
+        this.states = new GenerationalUsageStore(ConcurrentMapUsageStore::new, clock.millis() / GENERATION_MILLIS);
+    }
+
+    /**
+     * Charges permits against the client's per-minute allowance. Returns 0 if
+     * allowed, otherwise the milliseconds until the same request would pass.
+     */
+    long tryAcquire(String identifier, int permits, Quota quota) {
+        long now = clock.millis();
+        if (now / GENERATION_MILLIS > states.day()) {
+            states.advanceTo(now / GENERATION_MILLIS);
+        }
+        long interval = interval(quota.perMinute());
+        long tolerance = (quota.burst() + 1) * interval;
+        long cost = permits * interval;
+
+        // Low bit records whether this update granted, since a refusal leaves the time unchanged
+        long state = states.update(identifier, stored -> {
+            long caughtUpAt = stored >>> 1;
+            long start = Math.max(caughtUpAt, now);
+            if (caughtUpAt <= now || start + cost - now <= tolerance) {
+                return ((start + cost) << 1) | 1;
+            }
+            return caughtUpAt << 1;
+        });
+        if ((state & 1) != 0) {
+            return 0;
+        }
+        long caughtUpAt = state >>> 1;
+        return Math.max(1, Math.min(caughtUpAt - now, caughtUpAt + cost - tolerance - now));
+    }
+
+    /** Milliseconds until one more call would pass, without charging anything; 0 if it would pass now. */
+    long waitMillis(String identifier, Quota quota) {
+        long now = clock.millis();
+        long caughtUpAt = states.get(identifier) >>> 1;
+        long interval = interval(quota.perMinute());
+        long tolerance = (quota.burst() + 1) * interval;
+        if (caughtUpAt <= now || caughtUpAt + interval - now <= tolerance) {
+            return 0;
+        }
+        return Math.max(1, caughtUpAt + interval - tolerance - now);
+    }
+
+    private static long interval(int perMinute) {
+        return Math.max(1, MINUTE_MILLIS / perMinute);
+    }
+
+    int size() {
+        return states.size();
+    }
+
+    /** Largest burst whose allowance still fits in one generation. */
+    static int clampBurst(QuotaTier tier, int perMinute, int burst) {
+        if (perMinute <= 0) {
+            return burst;
+        }
+        long maxBurst = GENERATION_MILLIS / interval(perMinute) - 1;
+        if (burst > maxBurst) {
+            logger.warn("Burst {} for tier {} exceeds an hour at {}/minute, using {}", burst, tier.configName(),
+                    perMinute, maxBurst);
+            return (int) maxBurst;
+        }
+        return burst;
+    }
+}
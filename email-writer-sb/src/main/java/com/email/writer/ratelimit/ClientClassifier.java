@@ -0,0 +1,61 @@
+package com.email.writer.ratelimit;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Works out which {@link QuotaTier} a request belongs to, from the strongest
+ * credential it carries: a configured API or Pro key (X-API-Key), then a
+ * browser extension install id (X-Extension-Id). Anything else is anonymous
+ * and counted by IP. Unknown keys fall through to the next tier rather than
+ * being rejected.
+ *
+ * Install ids are chosen by the client, so extension usage is also counted
+ * against a per-IP ceiling. Keys resolve to a prebuilt identity; the
+ * extension tier builds its two identifier strings per request.
+ */
+@Component
+public class ClientClassifier {
+
+    static final String API_KEY_HEADER = "X-API-Key";
+    static final String EXTENSION_HEADER = "X-Extension-Id";
+
+    private final QuotaRegistry quotas;
+
+    @Autowired
+    public ClientClassifier(QuotaRegistry quotas) {
+        this.quotas = quotas;
+    }
+
+    public ClientIdentity classify(HttpServletRequest request, String clientIp) {
+        String apiKey = request.getHeader(API_KEY_HEADER);
+        if (apiKey != null) {
+            ClientIdentity keyClient = quotas.keyClient(apiKey);
+            if (keyClient != null) {
+                return keyClient;
+            }
+        }
+
+        String extensionId = request.getHeader(EXTENSION_HEADER);
+        if (extensionId != null && isInstallId(extensionId)) {
+            return new ClientIdentity(QuotaTier.EXTENSION, "ext:" + extensionId, "ext-ip:" + clientIp);
+        }
+
+        return ClientIdentity.anonymous(clientIp);
+    }
+
+    // Install ids are generated by the extension: UUIDs or similar, nothing else is accepted
+    static boolean isInstallId(String id) {
+        if (id.length() < 16 || id.length() > 64) {
+            return false;
+        }
+        for (int i = 0; i < id.length(); i++) {
+            char c = id.charAt(i);
+            if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '-')) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
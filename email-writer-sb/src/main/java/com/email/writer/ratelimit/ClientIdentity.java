@@ -0,0 +1,22 @@
+package com.email.writer.ratelimit;
+
+/**
+ * Who a request is charged to: the quota tier and the key usage is counted
+ * under. Identifiers carry a tier prefix ("ext:", "pro:", "key:") so tiers
+ * never share a counter; anonymous clients are counted by IP.
+ *
+ * ipBucket is set for tiers the client claims without proving anything (an
+ * extension install id): usage is then also counted under the client's IP,
+ * against the tier's per-IP ceiling, so made-up identifiers can't multiply
+ * one address's allowance. It is null for every other client.
+ */
+public record ClientIdentity(QuotaTier tier, String identifier, String ipBucket) {
+
+    public ClientIdentity(QuotaTier tier, String identifier) {
+        this(tier, identifier, null);
+    }
+
+    public static ClientIdentity anonymous(String clientIp) {
+        return new ClientIdentity(QuotaTier.ANONYMOUS, clientIp);
+    }
+}
@@ -0,0 +1,221 @@
+package com.email.writer.ratelimit;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+
+/**
+ * Works out which address a request came from, the same way for every
+ * endpoint. Forwarding headers are only believed when the connection comes
+ * from a trusted proxy (app.rate-limit.trusted-proxies, a list of CIDRs):
+ * X-Forwarded-For is then walked right to left, skipping trusted hops, and
+ * the first untrusted address is the client. Anyone else can put what they
+ * like in those headers, so for them the connection's own address is used.
+ *
+ * Addresses are parsed in place with {@link ClientKey} and matched against
+ * the trusted networks as 128-bit masks, with no splitting or regex.
+ */
+@Component
+public class ClientIpResolver {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClientIpResolver.class);
+    private static final String LOCALHOST_FALLBACK = "localhost-127.0.0.1";
+    private static final ClientKey INVALID = new ClientKey(-1, -1);
+
+    // Trusted networks as parallel arrays: address & mask == network
+    private final long[] networkHigh;
+    private final long[] networkLow;
+    private final long[] maskHigh;
+    private final long[] maskLow;
+
+    // Looked up on first use; the machine's address doesn't change under us
+    private volatile String localIdentifier;
+
+    @Autowired
+    public ClientIpResolver(@Value("${app.rate-limit.trusted-proxies:127.0.0.0/8,::1/128}") String trustedProxies) {
+        List<long[]> networks = new ArrayList<>();
+        for (String cidr : trustedProxies.split(",")) {
+            if (!cidr.isBlank()) {
+                networks.add(parseCidr(cidr.trim()));
+            }
+        }
+        networkHigh = new long[networks.size()];
+        networkLow = new long[networks.size()];
+        maskHigh = new long[networks.size()];
+        maskLow = new long[networks.size()];
+        for (int i = 0; i < networks.size(); i++) {
+            long[] network = networks.get(i);
+            maskHigh[i] = network[2];
+            maskLow[i] = network[3];
+            networkHigh[i] = network[0] & maskHigh[i];
+            networkLow[i] = network[1] & maskLow[i];
+        }
+        logger.info("Trusting forwarding headers from {}", trustedProxies);
+    }
+
+    public String resolve(HttpServletRequest request) {
+        String remoteAddr = request.getRemoteAddr();
+        if (remoteAddr == null || remoteAddr.isEmpty()) {
+            return "unknown";
+        }
+        ClientKey remote = parse(remoteAddr, 0, remoteAddr.length());
+        if (remote != INVALID && isTrusted(remote)) {
+            String forwarded = forwardedClient(request.getHeader("X-Forwarded-For"));
+            if (forwarded == null) {
+                forwarded = forwardedClient(request.getHeader("X-Real-IP"));
+            }
+            if (forwarded != null) {
+                return forwarded;
+            }
+        }
+        return isLoopback(remote) ? localIdentifier() : remoteAddr;
+    }
+
+    boolean isTrusted(ClientKey address) {
+        long high = address.high();
+        long low = address.low();
+        for (int i = 0; i < maskHigh.length; i++) {
+            if ((high & maskHigh[i]) == networkHigh[i] && (low & maskLow[i]) == networkLow[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The rightmost untrusted address in a comma-separated header, or the
+     * leftmost one if every hop is trusted. Stops at an entry that isn't an
+     * address, since nothing left of it can be relied on; null if none found.
+     */
+    private String forwardedClient(String header) {
+        if (header == null || header.isEmpty()) {
+            return null;
+        }
+        int candidateFrom = -1;
+        int candidateTo = -1;
+        int end = header.length();
+        while (end > 0) {
+            int start = header.lastIndexOf(',', end - 1) + 1;
+            int from = start;
+            int to = end;
+            while (from < to && header.charAt(from) == ' ') {
+                from++;
+            }
+            while (to > from && header.charAt(to - 1) == ' ') {
+                to--;
+            }
+            to = withoutPort(header, from, to);
+            if (to - from > 1 && header.charAt(from) == '[' && header.charAt(to - 1) == ']') {
+                from++;
+                to--;
+            }
+
+            ClientKey hop = parse(header, from, to);
+            if (hop == INVALID) {
+                break;
+            }
+            candidateFrom = from;
+            candidateTo = to;
+            if (!isTrusted(hop)) {
+                break;
+            }
+            end = start - 1;
+        }
+        return candidateFrom < 0 ? null : header.substring(candidateFrom, candidateTo);
+    }
+
+    // End of the address in s[from, to), dropping a ":port" after IPv4 or "]:port" after bracketed IPv6
+    private static int withoutPort(String s, int from, int to) {
+        if (from < to && s.charAt(from) == '[') {
+            int close = s.indexOf(']', from);
+            return close > 0 && close < to ? close + 1 : to;
+        }
+        int colon = s.indexOf(':', from);
+        if (colon >= 0 && colon < to && s.indexOf(':', colon + 1) < 0) {
+            return colon;
+        }
+        return to;
+    }
+
+    private static ClientKey parse(CharSequence s, int from, int to) {
+        long ipv4 = ClientKey.parseIpv4(s, from, to);
+        if (ipv4 >= 0) {
+            return new ClientKey(0, ClientKey.IPV4_MAPPED_PREFIX | ipv4);
+        }
+        ClientKey ipv6 = ClientKey.parseIpv6(s, from, to);
+        return ipv6 != null ? ipv6 : INVALID;
+    }
+
+    private static boolean isLoopback(ClientKey address) {
+        return address.isIpv4()
+                ? (address.low() & 0xFF00_0000L) == 0x7F00_0000L
+                : address.high() == 0 && address.low() == 1;
+    }
+
+    // Local development: use the machine's own address so every browser on it is one client
+    private String localIdentifier() {
+        String identifier = localIdentifier;
+        if (identifier == null) {
+            identifier = findLocalAddress();
+            localIdentifier = identifier;
+            logger.debug("Using {} for requests from this machine", identifier);
+        }
+        return identifier;
+    }
+
+    private static String findLocalAddress() {
+        try {
+            String hostAddress = InetAddress.getLocalHost().getHostAddress();
+            if (!hostAddress.startsWith("127.") && !hostAddress.equals("::1")) {
+                return hostAddress;
+            }
+            Enumeration<NetworkInterface> interfaces = NetworkInterface.getNetworkInterfaces();
+            while (interfaces.hasMoreElements()) {
+                NetworkInterface networkInterface = interfaces.nextElement();
+                if (networkInterface.isLoopback() || !networkInterface.isUp()) {
+                    continue;
+                }
+                Enumeration<InetAddress> addresses = networkInterface.getInetAddresses();
+                while (addresses.hasMoreElements()) {
+                    InetAddress address = addresses.nextElement();
+                    if (!address.isLoopbackAddress() && !address.isLinkLocalAddress()
+                            && address instanceof Inet4Address) {
+                        return address.getHostAddress();
+                    }
+                }
+            }
+        } catch (Exception e) {
+            logger.debug("Could not determine actual local IP: {}", e.getMessage());
+        }
+        return LOCALHOST_FALLBACK;
+    }
+
+    // {address high, address low, mask high, mask low}; IPv4 networks are matched in their IPv4-mapped form
+    private static long[] parseCidr(String cidr) {
+        int slash = cidr.indexOf('/');
+        int end = slash < 0 ? cidr.length() : slash;
+        ClientKey address = parse(cidr, 0, end);
+        if (address == INVALID) {
+            throw new IllegalArgumentException("Invalid trusted proxy network: " + cidr);
+        }
+        int maxBits = address.isIpv4() ? 32 : 128;
+        int bits = slash < 0 ? maxBits : Integer.parseInt(cidr.substring(slash + 1));
+        if (bits < 0 || bits > maxBits) {
+            throw new IllegalArgumentException("Invalid prefix length in trusted proxy network: " + cidr);
+        }
+        int prefix = address.isIpv4() ? 96 + bits : bits;
+        long maskHigh = prefix >= 64 ? -1L : prefix == 0 ? 0 : -1L << (64 - prefix);
+        long maskLow = prefix <= 64 ? 0 : prefix == 128 ? -1L : -1L << (128 - prefix);
+        return new long[]{address.high(), address.low(), maskHigh, maskLow};
+    }
+}
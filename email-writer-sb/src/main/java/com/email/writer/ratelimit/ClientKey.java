@@ -0,0 +1,192 @@
+package com.email.writer.ratelimit;
+
+/**
+ * A client identifier as a 128-bit value. IPv6 addresses map to their own
+ * bits, IPv4 addresses to their IPv4-mapped IPv6 form (::ffff:a.b.c.d), and
+ * anything else (e.g. "localhost-127.0.0.1") to a 128-bit hash placed in
+ * ff00::/8, a multicast range no client can send from, so hashed identifiers
+ * never collide with real addresses.
+ *
+ * The parsers work on the string in place without substrings or regexes.
+ * Besides the resulting key, only the IPv6 parser allocates: an eight-slot
+ * array for the address groups, which is short-lived and usually scalar
+ * replaced by the JIT.
+ */
+public record ClientKey(long high, long low) {
+
+    static final long IPV4_MAPPED_PREFIX = 0xFFFF_0000_0000L;
+    private static final long HASHED_TAG = 0xFF00_0000_0000_0000L;
+
+    public static ClientKey of(String identifier) {
+        long ipv4 = parseIpv4(identifier, 0, identifier.length());
+        if (ipv4 >= 0) {
+            return new ClientKey(0, IPV4_MAPPED_PREFIX | ipv4);
+        }
+        ClientKey ipv6 = parseIpv6(identifier);
+        if (ipv6 != null && (ipv6.high != 0 || ipv6.low != 0)) {
+            return ipv6;
+        }
+        return hashed(identifier);
+    }
+
+    public boolean isIpv4() {
+        return high == 0 && (low & 0xFFFF_FFFF_0000_0000L) == IPV4_MAPPED_PREFIX;
+    }
+
+    /**
+     * Parses dotted-quad IPv4 in s[from, to) into its 32-bit value, or returns
+     * -1 if it is not exactly four decimal octets.
+     */
+    public static long parseIpv4(CharSequence s, int from, int to) {
+        long address = 0;
+        int octets = 0;
+        int i = from;
+        while (i < to) {
+            int value = 0;
+            int digits = 0;
+            while (i < to) {
+                char c = s.charAt(i);
+                if (c < '0' || c > '9') {
+                    break;
+                }
+                value = value * 10 + (c - '0');
+                if (++digits > 3 || value > 255) {
+                    return -1;
+                }
+                i++;
+            }
+            if (digits == 0) {
+                return -1;
+            }
+            address = (address << 8) | value;
+            octets++;
+            if (i == to) {
+                break;
+            }
+            if (s.charAt(i) != '.' || octets == 4) {
+                return -1;
+            }
+            i++;
+            if (i == to) {
+                return -1;
+            }
+        }
+        return octets == 4 ? address : -1;
+    }
+
+    /**
+     * Parses an IPv6 address, optionally in brackets and with a zone id, with
+     * "::" compression and an embedded IPv4 tail. Returns null if invalid.
+     */
+    public static ClientKey parseIpv6(CharSequence s) {
+        return parseIpv6(s, 0, s.length());
+    }
+
+    /** As {@link #parseIpv6(CharSequence)}, for the address in s[from, to). */
+    public static ClientKey parseIpv6(CharSequence s, int from, int to) {
+        if (to - from > 1 && s.charAt(from) == '[' && s.charAt(to - 1) == ']') {
+            from++;
+            to--;
+        }
+        for (int i = from; i < to; i++) {
+            if (s.charAt(i) == '%') {
+                to = i;
+                break;
+            }
+        }
+        if (to - from < 2) {
+            return null;
+        }
+
+        // Up to 8 16-bit groups; those after "::" are collected separately and right-aligned
+        long[] groups = new long[8];
+        int count = 0;
+        int gapAt = -1;
+        int i = from;
+        if (s.charAt(i) == ':') {
+            if (s.charAt(i + 1) != ':') {
+                return null;
+            }
+            gapAt = 0;
+            i += 2;
+        }
+        while (i < to) {
+            if (count == 8) {
+                return null;
+            }
+            int start = i;
+            int value = 0;
+            while (i < to && i - start < 5) {
+                int digit = Character.digit(s.charAt(i), 16);
+                if (digit < 0) {
+                    break;
+                }
+                value = (value << 4) | digit;
+                i++;
+            }
+            if (i < to && s.charAt(i) == '.') {
+                // Embedded IPv4 takes the last two groups
+                long ipv4 = parseIpv4(s, start, to);
+                if (ipv4 < 0 || count > 6) {
+                    return null;
+                }
+                groups[count++] = ipv4 >>> 16;
+                groups[count++] = ipv4 & 0xFFFF;
+                i = to;
+                break;
+            }
+            if (i == start || i - start > 4) {
+                return null;
+            }
+            groups[count++] = value;
+            if (i == to) {
+                break;
+            }
+            if (s.charAt(i) != ':') {
+                return null;
+            }
+            i++;
+            if (i < to && s.charAt(i) == ':') {
+                if (gapAt >= 0) {
+                    return null;
+                }
+                gapAt = count;
+                i++;
+            } else if (i == to) {
+                return null;
+            }
+        }
+
+        if (gapAt < 0 && count != 8) {
+            return null;
+        }
+        if (gapAt >= 0 && count == 8) {
+            return null;
+        }
+
+        long high = 0;
+        long low = 0;
+        int shift = gapAt < 0 ? 0 : 8 - count;
+        for (int g = 0; g < count; g++) {
+            int position = g < (gapAt < 0 ? count : gapAt) ? g : g + shift;
+            if (position < 4) {
+                high |= groups[g] << (48 - 16 * position);
+            } else {
+                low |= groups[g] << (48 - 16 * (position - 4));
+            }
+        }
+        return new ClientKey(high, low);
+    }
+
+    private static ClientKey hashed(String identifier) {
+        // Two independent 64-bit FNV-1a style hashes with different offsets
+        long h1 = 0xCBF2_9CE4_8422_2325L;
+        long h2 = 0x8422_2325_CBF2_9CE4L;
+        for (int i = 0; i < identifier.length(); i++) {
+            char c = identifier.charAt(i);
+            h1 = (h1 ^ c) * 0x0000_0100_0000_01B3L;
+            h2 = (h2 ^ c) * 0x9E37_79B9_7F4A_7C15L;
+        }
+        return new ClientKey(HASHED_TAG | (h1 >>> 8), h2);
+    }
+}
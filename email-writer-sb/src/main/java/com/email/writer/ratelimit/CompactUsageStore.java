@@ -0,0 +1,223 @@
+package com.email.writer.ratelimit;
+
+import java.util.function.LongPredicate;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Usage store for very large client populations. Identifiers are reduced to
+ * 128-bit {@link ClientKey}s and kept with their state in three parallel
+ * long arrays, an open-addressing table with linear probing, so a client
+ * costs 24 bytes per slot (32-48 bytes at the table's load) and no objects
+ * at all. The table is split into independently locked segments to keep
+ * contention down; within a segment, updates are serialized.
+ *
+ * Non-IP identifiers are stored by hash, so two of them could in theory
+ * share a counter; at 120 bits that is not a practical concern.
+ */
+public class CompactUsageStore implements UsageStore {
+
+    private static final int SEGMENT_BITS = 6;
+    private static final int INITIAL_SEGMENT_CAPACITY = 256;
+
+    private final Segment[] segments = new Segment[1 << SEGMENT_BITS];
+
+    public CompactUsageStore() {
+        this(INITIAL_SEGMENT_CAPACITY);
+    }
+
+    CompactUsageStore(int initialSegmentCapacity) {
+        int capacity = Integer.highestOneBit(Math.max(4, initialSegmentCapacity - 1) << 1);
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment(capacity);
+        }
+    }
+
+    @Override
+    public long get(String identifier) {
+        ClientKey key = ClientKey.of(identifier);
+        long hash = hash(key.high(), key.low());
+        Segment segment = segmentFor(hash);
+        synchronized (segment) {
+            int slot = segment.indexOf(key.high(), key.low(), hash);
+            return slot >= 0 ? segment.states[slot] : 0L;
+        }
+    }
+
+    @Override
+    public long update(String identifier, LongUnaryOperator update) {
+        ClientKey key = ClientKey.of(identifier);
+        long hash = hash(key.high(), key.low());
+        Segment segment = segmentFor(hash);
+        synchronized (segment) {
+            int slot = segment.indexOf(key.high(), key.low(), hash);
+            long state = slot >= 0 ? segment.states[slot] : 0L;
+            long next = update.applyAsLong(state);
+            if (next != state) {
+                if (slot >= 0) {
+                    segment.states[slot] = next;
+                } else {
+                    segment.insert(~slot, key.high(), key.low(), hash, next);
+                }
+            }
+            return next;
+        }
+    }
+
+    @Override
+    public long remove(String identifier) {
+        ClientKey key = ClientKey.of(identifier);
+        long hash = hash(key.high(), key.low());
+        Segment segment = segmentFor(hash);
+        synchronized (segment) {
+            int slot = segment.indexOf(key.high(), key.low(), hash);
+            if (slot < 0) {
+                return 0L;
+            }
+            long state = segment.states[slot];
+            segment.removeAt(slot);
+            return state;
+        }
+    }
+
+    @Override
+    public int removeIf(LongPredicate idle) {
+        int removed = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                removed += segment.removeIf(idle);
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size;
+            }
+        }
+        return size;
+    }
+
+    private Segment segmentFor(long hash) {
+        return segments[(int) (hash >>> (64 - SEGMENT_BITS))];
+    }
+
+    // Segments use the top bits of the hash and slots the bottom bits, so the two stay independent
+    static long hash(long high, long low) {
+        long h = high * 0x9E37_79B9_7F4A_7C15L ^ low;
+        h ^= h >>> 33;
+        h *= 0xFF51_AFD7_ED55_8CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CE_B9FE_1A85_EC53L;
+        return h ^ (h >>> 33);
+    }
+
+    /**
+     * One open-addressing table. A slot is empty when both key halves are 0,
+     * which {@link ClientKey#of} never produces.
+     */
+    private static final class Segment {
+        private long[] highs;
+        private long[] lows;
+        private long[] states;
+        private int mask;
+        private int size;
+
+        Segment(int capacity) {
+            allocate(capacity);
+        }
+
+        private void allocate(int capacity) {
+            highs = new long[capacity];
+            lows = new long[capacity];
+            states = new long[capacity];
+            mask = capacity - 1;
+        }
+
+        /** The key's slot, or the bitwise complement of the empty slot it would go in. */
+        int indexOf(long high, long low, long hash) {
+            int i = (int) hash & mask;
+            while (true) {
+                if (highs[i] == high && lows[i] == low) {
+                    return i;
+                }
+                if (isEmpty(i)) {
+                    return ~i;
+                }
+                i = (i + 1) & mask;
+            }
+        }
+
+        void insert(int slot, long high, long low, long hash, long state) {
+            // Keep the load at or under 3/4 so probe sequences stay short
+            if ((size + 1) * 4L > (mask + 1) * 3L) {
+                grow();
+                slot = ~indexOf(high, low, hash);
+            }
+            highs[slot] = high;
+            lows[slot] = low;
+            states[slot] = state;
+            size++;
+        }
+
+        int removeIf(LongPredicate idle) {
+            int removed = 0;
+            int i = 0;
+            while (i <= mask) {
+                if (!isEmpty(i) && idle.test(states[i])) {
+                    // The shift may pull a later entry into i, so look at i again
+                    removeAt(i);
+                    removed++;
+                } else {
+                    i++;
+                }
+            }
+            return removed;
+        }
+
+        // Backward-shift deletion: no tombstones, so lookups never slow down after cleanups
+        void removeAt(int hole) {
+            int i = hole;
+            while (true) {
+                i = (i + 1) & mask;
+                if (isEmpty(i)) {
+                    break;
+                }
+                int home = (int) hash(highs[i], lows[i]) & mask;
+                // The entry at i may fill the hole only if its home slot is not between hole and i
+                if (((i - home) & mask) >= ((i - hole) & mask)) {
+                    highs[hole] = highs[i];
+                    lows[hole] = lows[i];
+                    states[hole] = states[i];
+                    hole = i;
+                }
+            }
+            highs[hole] = 0;
+            lows[hole] = 0;
+            states[hole] = 0;
+            size--;
+        }
+
+        private void grow() {
+            long[] oldHighs = highs;
+            long[] oldLows = lows;
+            long[] oldStates = states;
+            allocate(oldHighs.length * 2);
+            for (int j = 0; j < oldHighs.length; j++) {
+                if (oldHighs[j] != 0 || oldLows[j] != 0) {
+                    int slot = ~indexOf(oldHighs[j], oldLows[j], hash(oldHighs[j], oldLows[j]));
+                    highs[slot] = oldHighs[j];
+                    lows[slot] = oldLows[j];
+                    states[slot] = oldStates[j];
+                }
+            }
+        }
+
+        private boolean isEmpty(int i) {
+            return highs[i] == 0 && lows[i] == 0;
+        }
+    }
+}
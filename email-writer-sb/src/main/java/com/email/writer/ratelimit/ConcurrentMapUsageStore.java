@@ -0,0 +1,81 @@
+package com.email.writer.ratelimit;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongPredicate;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * One AtomicLong per client in a ConcurrentHashMap keyed by the identifier
+ * string. Updates are a lock-free compareAndSet on the client's counter.
+ * Simple and fast, but every client costs a String, a map node and an
+ * AtomicLong, well over 100 bytes; see {@link CompactUsageStore} for large
+ * client populations.
+ */
+public class ConcurrentMapUsageStore implements UsageStore {
+
+    // Marks a counter that removeIf has unlinked; callers holding it must look the key up again
+    private static final long REMOVED = -1L;
+
+    private final Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+
+    @Override
+    public long get(String identifier) {
+        AtomicLong counter = counters.get(identifier);
+        long state = counter != null ? counter.get() : 0L;
+        return state == REMOVED ? 0L : state;
+    }
+
+    @Override
+    public long update(String identifier, LongUnaryOperator update) {
+        while (true) {
+            AtomicLong counter = counterFor(identifier);
+            long state = counter.get();
+            if (state == REMOVED) {
+                counters.remove(identifier, counter);
+                continue;
+            }
+            long next = update.applyAsLong(state);
+            if (next == state || counter.compareAndSet(state, next)) {
+                return next;
+            }
+        }
+    }
+
+    @Override
+    public long remove(String identifier) {
+        AtomicLong counter = counters.get(identifier);
+        if (counter == null) {
+            return 0L;
+        }
+        long state = counter.getAndSet(REMOVED);
+        counters.remove(identifier, counter);
+        return state == REMOVED ? 0L : state;
+    }
+
+    @Override
+    public int removeIf(LongPredicate idle) {
+        AtomicInteger removed = new AtomicInteger();
+        counters.forEach((identifier, counter) -> {
+            long state = counter.get();
+            // Claim the counter first so a concurrent update can't charge it after it is unlinked
+            if (state != REMOVED && idle.test(state) && counter.compareAndSet(state, REMOVED)) {
+                counters.remove(identifier, counter);
+                removed.incrementAndGet();
+            }
+        });
+        return removed.get();
+    }
+
+    @Override
+    public int size() {
+        return counters.size();
+    }
+
+    private AtomicLong counterFor(String identifier) {
+        AtomicLong counter = counters.get(identifier);
+        return counter != null ? counter : counters.computeIfAbsent(identifier, k -> new AtomicLong());
+    }
+}
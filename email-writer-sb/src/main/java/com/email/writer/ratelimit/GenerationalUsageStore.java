@@ -0,0 +1,146 @@
+package com.email.writer.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongPredicate;
+import java.util.function.LongUnaryOperator;
+import java.util.function.Supplier;
+
+/**
+ * Expires usage state a whole day at a time instead of sweeping it. Clients
+ * are written to the current day's store; a client first seen today whose
+ * state is still in yesterday's store is moved across on its first update.
+ * At rollover yesterday's store, now holding only clients not seen since,
+ * is dropped whole and the current one becomes yesterday's. Every policy
+ * reads a client untouched for a full day as idle (see {@link RefillPolicy}),
+ * so nothing dropped is still counting. Expiry is O(1) per rollover plus one
+ * move per returning client, rather than a pass over every client.
+ */
+class GenerationalUsageStore implements UsageStore {
+
+    private final Supplier<UsageStore> stores;
+    private final AtomicLong reclaimed = new AtomicLong();
+    private volatile Generations generations;
+
+    GenerationalUsageStore(Supplier<UsageStore> stores, long day) {
+        this.stores = stores;
+        Generations initial = new Generations(day, stores.get(), null);
+        initial.previousSealed = true;
+        this.generations = initial;
+    }
+
+    @Override
+    public long get(String identifier) {
+        Generations g = generations;
+        long state = g.current.get(identifier);
+        return state != 0 || g.previous == null ? state : g.previous.get(identifier);
+    }
+
+    @Override
+    public long update(String identifier, LongUnaryOperator update) {
+        while (true) {
+            Generations g = generations;
+            g.writers.increment();
+            try {
+                // A rollover published after we registered waits for us; one published before
+                // might not, so write to the new generation instead
+                if (generations != g) {
+                    continue;
+                }
+                boolean[] moved = new boolean[1];
+                long state = g.current.update(identifier, stored -> {
+                    moved[0] = stored == 0 && g.previous != null;
+                    return update.applyAsLong(moved[0] ? g.previousState(identifier) : stored);
+                });
+                if (moved[0]) {
+                    g.previous.remove(identifier);
+                }
+                return state;
+            } finally {
+                g.writers.decrement();
+            }
+        }
+    }
+
+    @Override
+    public long remove(String identifier) {
+        Generations g = generations;
+        long state = g.current.remove(identifier);
+        return state != 0 || g.previous == null ? state : g.previous.remove(identifier);
+    }
+
+    @Override
+    public int removeIf(LongPredicate idle) {
+        Generations g = generations;
+        return g.current.removeIf(idle) + (g.previous != null ? g.previous.removeIf(idle) : 0);
+    }
+
+    // Clients that moved today are no longer in yesterday's store, so nobody is counted twice
+    @Override
+    public int size() {
+        Generations g = generations;
+        return g.current.size() + (g.previous != null ? g.previous.size() : 0);
+    }
+
+    /**
+     * Rolls over to day, dropping every generation that is now more than a
+     * day old. Returns how many clients were dropped.
+     */
+    synchronized int advanceTo(long day) {
+        Generations old = generations;
+        if (day <= old.day) {
+            return 0;
+        }
+        boolean nextDay = day == old.day + 1;
+        Generations next = new Generations(day, stores.get(), nextDay ? old.current : null);
+        generations = next;
+
+        // Writers that registered with the old generations finish before anyone reads yesterday's store
+        while (old.writers.sum() != 0) {
+            Thread.onSpinWait();
+        }
+        next.previousSealed = true;
+
+        int dropped = (old.previous != null ? old.previous.size() : 0) + (nextDay ? 0 : old.current.size());
+        reclaimed.addAndGet(dropped);
+        return dropped;
+    }
+
+    String currentStoreName() {
+        return generations.current.getClass().getSimpleName();
+    }
+
+    long day() {
+        return generations.day;
+    }
+
+    int currentSize() {
+        return generations.current.size();
+    }
+
+    long reclaimed() {
+        return reclaimed.get();
+    }
+
+    private static final class Generations {
+        final long day;
+        final UsageStore current;
+        final UsageStore previous;
+        final LongAdder writers = new LongAdder();
+        volatile boolean previousSealed;
+
+        Generations(long day, UsageStore current, UsageStore previous) {
+            this.day = day;
+            this.current = current;
+            this.previous = previous;
+        }
+
+        // Only read once the rollover that made it yesterday's has seen its last writer out
+        long previousState(String identifier) {
+            while (!previousSealed) {
+                Thread.onSpinWait();
+            }
+            return previous.get(identifier);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.email.writer.ratelimit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Per-instance limits. Each client's usage is one packed long whose layout
+ * and refill behaviour come from the configured {@link RefillPolicy}, held in
+ * a {@link UsageStore}; checking and charging is a single atomic store
+ * update, so concurrent requests from one client can neither both slip past
+ * the limit nor lose a charge. State is kept in per-day generations that
+ * expire whole, see {@link GenerationalUsageStore}.
+ */
+@Component
+@ConditionalOnProperty(name = "app.rate-limit.backend", havingValue = "memory", matchIfMissing = true)
+public class InMemoryRateLimitBackend implements RateLimitBackend {
+
+    private static final Logger logger = LoggerFactory.getLogger(InMemoryRateLimitBackend.class);
+
+    private final GenerationalUsageStore usageStore;
+    private final String storeName;
+    private final RefillPolicy policy;
+    private final Clock clock;
+    private final UsageWriteBehind writeBehind;
+
+    @Autowired
+    public InMemoryRateLimitBackend(@Value("${app.rate-limit.policy:DAILY_FIXED_WINDOW}") RefillPolicy policy,
+                                    @Value("${app.rate-limit.store:concurrent-map}") String store,
+                                    Optional<UsageWriteBehind> writeBehind) {
+        this(UsageStore.factory(store), policy, RefillPolicy.systemClock(), writeBehind.orElse(null));
+    }
+
+    InMemoryRateLimitBackend(Supplier<UsageStore> stores, RefillPolicy policy, Clock clock, UsageWriteBehind writeBehind) {
+        this.policy = policy;
+        this.clock = clock;
+        this.writeBehind = writeBehind;
+        this.usageStore = new GenerationalUsageStore(stores, RefillPolicy.day(localMillis()));
+        this.storeName = usageStore.currentStoreName();
+        logger.info("In-memory rate limiting with policy {} and {}", policy, storeName);
+
+        if (writeBehind != null) {
+            writeBehind.load((identifier, state) -> usageStore.update(identifier, stored -> state));
+        }
+    }
+
+    @Override
+    public RateLimitDecision acquire(String identifier, int permits, int limit) {
+        long now = localMillis();
+        if (RefillPolicy.day(now) > usageStore.day()) {
+            // First charge after midnight rolls over, so today's usage never lands in yesterday's store
+            cleanup();
+        }
+        // Written by the update function; its last run is the one whose state got installed
+        boolean[] allowed = new boolean[1];
+        long state = usageStore.update(identifier, stored -> {
+            long current = policy.refresh(stored, now, limit);
+            allowed[0] = policy.used(current, now, limit) + permits <= limit;
+            return allowed[0] ? policy.add(current, permits) : current;
+        });
+
+        if (allowed[0] && permits > 0 && writeBehind != null) {
+            writeBehind.record(identifier, state);
+        }
+        return policy.decision(allowed[0], state, now, limit);
+    }
+
+    @Override
+    public RateLimitDecision peek(String identifier, int limit) {
+        long now = localMillis();
+        long current = policy.refresh(usageStore.get(identifier), now, limit);
+        return policy.decision(policy.used(current, now, limit) + 1 <= limit, current, now, limit);
+    }
+
+    @Override
+    public RateLimitDecision refund(String identifier, int permits, int limit) {
+        long now = localMillis();
+        long state = usageStore.update(identifier,
+                stored -> policy.refund(policy.refresh(stored, now, limit), permits));
+        if (writeBehind != null) {
+            writeBehind.record(identifier, state);
+        }
+        return policy.decision(true, state, now, limit);
+    }
+
+    @Override
+    public RefillPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Live and expired client counts for the metrics endpoint.
+     */
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("store", storeName);
+        stats.put("liveEntries", usageStore.size());
+        stats.put("seenToday", usageStore.currentSize());
+        stats.put("reclaimedEntries", usageStore.reclaimed());
+        stats.put("generationDate", LocalDate.ofEpochDay(usageStore.day()));
+        if (writeBehind != null) {
+            stats.put("persistence", writeBehind.getStats());
+        }
+        return stats;
+    }
+
+    private long localMillis() {
+        return RefillPolicy.localMillis(clock);
+    }
+
+    // Checked every minute so the rollover happens shortly after local midnight
+    @Scheduled(fixedRate = 60000)
+    public void cleanup() {
+        int removed = usageStore.advanceTo(RefillPolicy.day(localMillis()));
+        if (removed > 0) {
+            logger.info("Cleaned up {} old usage records", removed);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.email.writer.ratelimit;
+
+/**
+ * Limits for one tier: calls per day, plus an optional short-term rate of
+ * perMinute calls a minute that tolerates burst extra calls back to back,
+ * and an optional budget of Gemini tokens per day. 0 turns either off.
+ * ipDailyLimit caps the calls all of one IP's clients of the tier make in a
+ * day, for tiers whose identifiers are unverified (see {@link ClientIdentity}).
+ */
+public record Quota(int dailyLimit, int perMinute, int burst, int dailyTokens, int ipDailyLimit) {
+
+    public boolean hasMinuteLimit() {
+        return perMinute > 0;
+    }
+
+    public boolean hasTokenBudget() {
+        return dailyTokens > 0;
+    }
+}
@@ -0,0 +1,203 @@
+package com.email.writer.ratelimit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+/**
+ * The quota for each tier, plus the API keys that unlock the higher tiers:
+ * app.rate-limit.api-keys for the API key tier, app.rate-limit.pro-keys for
+ * Pro. Read from app.rate-limit.* properties, optionally overridden
+ * by the properties file at app.rate-limit.tiers-file, which is checked for
+ * changes every app.rate-limit.tiers-reload-ms and applied without a restart.
+ *
+ * Each load builds a new immutable snapshot and swaps it in, so lookups are
+ * a volatile read and an array index or hash lookup, and a bad file never
+ * leaves limits half-applied. The snapshot holds a ready-made identity per
+ * key, counted under a digest of the key, so keys never show up in logs or
+ * storage and nothing is hashed per request.
+ */
+@Component
+public class QuotaRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(QuotaRegistry.class);
+    private static final String PREFIX = "app.rate-limit.";
+    private static final int FALLBACK_DAILY_LIMIT = 5;
+
+    private final UnaryOperator<String> environment;
+    private final Path tiersFile;
+    private volatile Snapshot snapshot;
+    private volatile FileTime loadedModified;
+    private volatile int reloads;
+
+    @Autowired
+    public QuotaRegistry(Environment environment, @Value("${app.rate-limit.tiers-file:}") String tiersFile) {
+        this(environment::getProperty, tiersFile.isBlank() ? null : Path.of(tiersFile));
+    }
+
+    QuotaRegistry(UnaryOperator<String> environment, Path tiersFile) {
+        this.environment = environment;
+        this.tiersFile = tiersFile;
+        this.snapshot = load(readTiersFile());
+        logger.info("Quota tiers: {}", snapshot.describe());
+    }
+
+    /** Every tier gets the same daily limit and no short-term limit, as before tiers existed. */
+    static QuotaRegistry fixed(int dailyLimit) {
+        return new QuotaRegistry(key -> key.endsWith(".daily-limit") ? Integer.toString(dailyLimit) : null, null);
+    }
+
+    public Quota quota(QuotaTier tier) {
+        return snapshot.quotas[tier.ordinal()];
+    }
+
+    /** The identity a configured key is charged as, or null for an unknown key. */
+    public ClientIdentity keyClient(String key) {
+        return snapshot.keyClients.get(key);
+    }
+
+    @Scheduled(fixedDelayString = "${app.rate-limit.tiers-reload-ms:10000}")
+    public void reloadIfChanged() {
+        if (tiersFile == null) {
+            return;
+        }
+        try {
+            FileTime modified = Files.exists(tiersFile) ? Files.getLastModifiedTime(tiersFile) : null;
+            if (modified == null ? loadedModified == null : modified.equals(loadedModified)) {
+                return;
+            }
+            snapshot = load(readTiersFile());
+            reloads++;
+            logger.info("Reloaded quota tiers from {}: {}", tiersFile, snapshot.describe());
+        } catch (RuntimeException | IOException e) {
+            logger.error("Could not reload quota tiers from {}, keeping the current ones: {}", tiersFile, e.getMessage());
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Snapshot current = snapshot;
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("tiers", current.describe());
+        stats.put("loadedAt", current.loadedAt.toString());
+        stats.put("reloads", reloads);
+        stats.put("apiKeys", current.count(QuotaTier.API_KEY));
+        stats.put("proKeys", current.count(QuotaTier.PRO));
+        return stats;
+    }
+
+    private Properties readTiersFile() {
+        Properties file = new Properties();
+        if (tiersFile == null) {
+            return file;
+        }
+        try {
+            loadedModified = Files.exists(tiersFile) ? Files.getLastModifiedTime(tiersFile) : null;
+            if (loadedModified != null) {
+                try (InputStream in = Files.newInputStream(tiersFile)) {
+                    file.load(in);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unreadable quota tiers file " + tiersFile, e);
+        }
+        return file;
+    }
+
+    private Snapshot load(Properties file) {
+        UnaryOperator<String> property = key -> file.getProperty(PREFIX + key, environment.apply(PREFIX + key));
+
+        Quota[] quotas = new Quota[QuotaTier.values().length];
+        for (QuotaTier tier : QuotaTier.values()) {
+            String base = "tiers." + tier.configName() + ".";
+            Quota fallback = tier == QuotaTier.ANONYMOUS
+                    ? new Quota(FALLBACK_DAILY_LIMIT, 0, 0, 0, 0)
+                    : quotas[QuotaTier.ANONYMOUS.ordinal()];
+            int dailyLimit = intProperty(property, base + "daily-limit", fallback.dailyLimit());
+            int perMinute = intProperty(property, base + "per-minute", fallback.perMinute());
+            int burst = intProperty(property, base + "burst", fallback.burst());
+            int dailyTokens = intProperty(property, base + "daily-tokens", fallback.dailyTokens());
+            // Unset means one client's worth per IP
+            int ipDailyLimit = intProperty(property, base + "ip-daily-limit", 0);
+            quotas[tier.ordinal()] = new Quota(dailyLimit, perMinute, BurstLimiter.clampBurst(tier, perMinute, burst),
+                    dailyTokens, ipDailyLimit > 0 ? ipDailyLimit : dailyLimit);
+        }
+
+        Map<String, ClientIdentity> keyClients = new HashMap<>();
+        for (String key : listProperty(property, "pro-keys")) {
+            keyClients.put(key, new ClientIdentity(QuotaTier.PRO, "pro:" + digest(key)));
+        }
+        for (String key : listProperty(property, "api-keys")) {
+            keyClients.put(key, new ClientIdentity(QuotaTier.API_KEY, "key:" + digest(key)));
+        }
+        return new Snapshot(quotas, Map.copyOf(keyClients), Instant.now());
+    }
+
+    private static int intProperty(UnaryOperator<String> property, String key, int defaultValue) {
+        String value = property.apply(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        int parsed = Integer.parseInt(value.trim());
+        if (parsed < 0) {
+            throw new IllegalArgumentException(PREFIX + key + " must not be negative");
+        }
+        return parsed;
+    }
+
+    private static Set<String> listProperty(UnaryOperator<String> property, String key) {
+        String value = property.apply(key);
+        if (value == null || value.isBlank()) {
+            return Set.of();
+        }
+        return Arrays.stream(value.split(","))
+                .map(String::trim)
+                .filter(item -> !item.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    private static String digest(String key) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private record Snapshot(Quota[] quotas, Map<String, ClientIdentity> keyClients, Instant loadedAt) {
+
+        long count(QuotaTier tier) {
+            return keyClients.values().stream().filter(client -> client.tier() == tier).count();
+        }
+
+        Map<String, Quota> describe() {
+            Map<String, Quota> tiers = new HashMap<>();
+            for (QuotaTier tier : QuotaTier.values()) {
+                tiers.put(tier.configName(), quotas[tier.ordinal()]);
+            }
+            return tiers;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.email.writer.ratelimit;
+
+/**
+ * Kinds of client, each with its own {@link Quota}. Configured under
+ * app.rate-limit.tiers.&lt;configName&gt;.
+ */
+public enum QuotaTier {
+    ANONYMOUS("anonymous"),
+    EXTENSION("extension"),
+    PRO("pro"),
+    API_KEY("api-key");
+
+    private final String configName;
+
+    QuotaTier(String configName) {
+        this.configName = configName;
+    }
+
+    public String configName() {
+        return configName;
+    }
+}
@@ -0,0 +1,33 @@
+package com.email.writer.ratelimit;
+
+import java.util.Map;
+
+/**
+ * Where rate-limit state lives and gets charged. {@link RateLimitingService}
+ * decides who gets which limit; a backend only counts. The in-memory backend
+ * limits each instance on its own, the Redis one shares limits across every
+ * instance pointed at the same Redis. Chosen with app.rate-limit.backend.
+ */
+public interface RateLimitBackend {
+
+    /**
+     * Charges permits calls to the client if they fit under limit, all or
+     * nothing, and reports the resulting usage either way.
+     */
+    RateLimitDecision acquire(String identifier, int permits, int limit);
+
+    /**
+     * Current usage without charging; allowed means one more call would fit.
+     */
+    RateLimitDecision peek(String identifier, int limit);
+
+    /**
+     * Gives back permits charged earlier for work that was never done, and
+     * reports the resulting usage.
+     */
+    RateLimitDecision refund(String identifier, int permits, int limit);
+
+    RefillPolicy getPolicy();
+
+    Map<String, Object> getStats();
+}
@@ -0,0 +1,32 @@
+package com.email.writer.ratelimit;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * Outcome of a rate-limit check, with the usage as of that check, so callers
+ * can answer the client without looking the identifier up again.
+ */
+public record RateLimitDecision(boolean allowed, int used, int limit, long resetInSeconds, LocalDate resetDate) {
+
+    public int remaining() {
+        return Math.max(0, limit - used);
+    }
+
+    // What to tell a refused client: out of calls for the day, or only going too fast
+    public String rejectionMessage() {
+        return remaining() > 0
+                ? "Too many requests. Please wait " + resetInSeconds + " seconds and try again."
+                : "You've reached your daily limit of " + limit + " API calls. Please try again tomorrow.";
+    }
+
+    // Adds the usage fields every rate-limited endpoint returns to its response
+    public void putUsageInfo(Map<String, Object> response) {
+        response.put("currentUsage", used);
+        response.put("remainingCalls", remaining());
+        response.put("maxCalls", limit);
+        response.put("canMakeCall", remaining() > 0);
+        response.put("resetDate", resetDate);
+        response.put("resetInSeconds", resetInSeconds);
+    }
+}
@@ -0,0 +1,91 @@
+package com.email.writer.ratelimit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Checks the client's quota before Spring MVC reads, deserializes and
+ * validates the request body. A generation request (POST
+ * /api/email/generate-*) from a client that is already out of calls, going
+ * too fast or out of tokens gets a 429 with Retry-After straight away;
+ * otherwise it carries on to the controller, which still charges the real
+ * cost atomically once it knows it.
+ *
+ * No other request is looked at, so they cost no extra backend round trip;
+ * the controllers set the {@link RateLimitHeaders} from the usage they read
+ * or charge anyway.
+ */
+@Component
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(RateLimitFilter.class);
+    private static final String GENERATE_PREFIX = "/api/email/generate-";
+
+    private final RateLimitingService rateLimitingService;
+    private final ClientClassifier clientClassifier;
+    private final ClientIpResolver clientIpResolver;
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    public RateLimitFilter(RateLimitingService rateLimitingService, ClientClassifier clientClassifier,
+                           ClientIpResolver clientIpResolver, ObjectMapper objectMapper) {
+        this.rateLimitingService = rateLimitingService;
+        this.clientClassifier = clientClassifier;
+        this.clientIpResolver = clientIpResolver;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"POST".equals(request.getMethod()) || !request.getRequestURI().startsWith(GENERATE_PREFIX);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String clientIp = clientIpResolver.resolve(request);
+        ClientIdentity client = clientClassifier.classify(request, clientIp);
+        UsageCharge check = rateLimitingService.check(client);
+        RateLimitHeaders.apply(response, check.decision());
+
+        if (!check.allowed()) {
+            logger.warn("Rate limit exceeded for IP: {}, rejected before reading the request", clientIp);
+            reject(request, response, check);
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+
+    // Same body the controllers send for a refused call
+    private void reject(HttpServletRequest request, HttpServletResponse response, UsageCharge check)
+            throws IOException {
+        Map<String, Object> body = new HashMap<>();
+        body.put("success", false);
+        body.put("error", "Rate limit exceeded");
+        body.put("message", check.rejectionMessage());
+        check.putUsageInfo(body);
+
+        // CORS is applied by Spring MVC, which this response never reaches
+        if (request.getHeader("Origin") != null) {
+            response.setHeader("Access-Control-Allow-Origin", "*");
+            response.setHeader("Access-Control-Expose-Headers", String.join(", ", RateLimitHeaders.EXPOSED));
+        }
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), body);
+    }
+}
@@ -0,0 +1,40 @@
+package com.email.writer.ratelimit;
+
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * The quota headers every rate-limited response carries, so clients can
+ * track their allowance without calling /api/rate-limit/check.
+ */
+public final class RateLimitHeaders {
+
+    public static final String LIMIT = "X-RateLimit-Limit";
+    public static final String REMAINING = "X-RateLimit-Remaining";
+    public static final String RESET = "X-RateLimit-Reset";
+    public static final String RETRY_AFTER = "Retry-After";
+
+    // Browsers only let scripts read non-standard headers that are exposed
+    public static final String[] EXPOSED = {LIMIT, REMAINING, RESET, RETRY_AFTER};
+
+    private RateLimitHeaders() {
+    }
+
+    /** Sets the headers from a decision, replacing any set earlier in the request; Retry-After only on refusal. */
+    public static void apply(HttpServletResponse response, RateLimitDecision decision) {
+        response.setHeader(LIMIT, Integer.toString(decision.limit()));
+        response.setHeader(REMAINING, Integer.toString(decision.remaining()));
+        response.setHeader(RESET, Long.toString(decision.resetInSeconds()));
+        if (!decision.allowed()) {
+            response.setHeader(RETRY_AFTER, Long.toString(Math.max(1, decision.resetInSeconds())));
+        }
+    }
+
+    /** The same headers for a usage read, when it could be read. */
+    public static void apply(HttpServletResponse response, ApiUsageResponse usage) {
+        if (usage.success()) {
+            response.setHeader(LIMIT, Integer.toString(usage.maxCalls()));
+            response.setHeader(REMAINING, Integer.toString(usage.remainingCalls()));
+            response.setHeader(RESET, Long.toString(usage.resetInSeconds()));
+        }
+    }
+}
@@ -1,94 +1,204 @@
 package com.email.writer.ratelimit;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.time.LocalDate;
-import java.time.LocalDateTime;
+import java.time.Clock;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.HashMap;
 
+/**
+ * Per-client call limits. Looks up the client's {@link Quota} from its tier,
+ * enforces the per-minute part and any token budget locally and leaves daily
+ * call counting to the configured {@link RateLimitBackend}.
+ */
 @Service
 public class RateLimitingService {
 
     private static final Logger logger = LoggerFactory.getLogger(RateLimitingService.class);
-    private static final int DEFAULT_DAILY_LIMIT = 5;
 
-    private final Map<String, UserUsageData> usageTracker = new ConcurrentHashMap<>();
+    private final RateLimitBackend backend;
+    private final QuotaRegistry quotas;
+    private final BurstLimiter burstLimiter;
+    private final TokenBudget tokenBudget;
 
-    public static class UserUsageData {
-        private int callCount;
-        private LocalDate lastResetDate;
-        private LocalDateTime lastCallTime;
+    @Autowired
+    public RateLimitingService(RateLimitBackend backend, QuotaRegistry quotas) {
+        this(backend, quotas, RefillPolicy.systemClock());
+    }
+
+    RateLimitingService(RefillPolicy policy, int dailyLimit, Clock clock) {
+        this(new InMemoryRateLimitBackend(ConcurrentMapUsageStore::new, policy, clock, null), dailyLimit);
+    }
+
+    RateLimitingService(RateLimitBackend backend, int dailyLimit) {
+        this(backend, QuotaRegistry.fixed(dailyLimit), RefillPolicy.systemClock());
+    }
+
+    RateLimitingService(RateLimitBackend backend, QuotaRegistry quotas, Clock clock) {
+        this.backend = backend;
+        this.quotas = quotas;
+        this.burstLimiter = new BurstLimiter(clock);
+        this.tokenBudget = new TokenBudget(clock);
+        logger.info("Rate limiting on {}", backend.getClass().getSimpleName());
+    }
+
+    /**
+     * Charges permits calls if the client has that many left, all or nothing,
+     * and reports the resulting usage either way. A request refused by the
+     * per-minute limit is not charged against the daily one. A client with an
+     * IP bucket is charged there too and refused once its IP's ceiling is
+     * reached, whatever identifier it presents.
+     */
+    public RateLimitDecision acquire(ClientIdentity client, int permits) {
+        Quota quota = quotas.quota(client.tier());
+        String identifier = client.identifier();
+        if (quota.hasMinuteLimit()) {
+            long waitMillis = burstLimiter.tryAcquire(identifier, permits, quota);
+            if (waitMillis > 0) {
+                RateLimitDecision daily = backend.peek(identifier, quota.dailyLimit());
+                return new RateLimitDecision(false, daily.used(), daily.limit(), (waitMillis + 999) / 1000,
+                        daily.resetDate());
+            }
+        }
+        String ipBucket = client.ipBucket();
+        if (ipBucket != null) {
+            RateLimitDecision shared = backend.acquire(ipBucket, permits, quota.ipDailyLimit());
+            if (!shared.allowed()) {
+                logger.info("Per-IP ceiling of {} reached for {}", quota.ipDailyLimit(), ipBucket);
+                return shared;
+            }
+        }
+        RateLimitDecision decision = backend.acquire(identifier, permits, quota.dailyLimit());
+        if (decision.allowed()) {
+            logger.info("Usage recorded for {}: {}/{} (+{})", identifier, decision.used(), decision.limit(), permits);
+        } else if (ipBucket != null) {
+            backend.refund(ipBucket, permits, quota.ipDailyLimit());
+        }
+        return decision;
+    }
+
+    // Gives back calls charged by acquire, in the client's IP bucket as well
+    private RateLimitDecision refund(ClientIdentity client, int permits) {
+        Quota quota = quotas.quota(client.tier());
+        if (client.ipBucket() != null) {
+            backend.refund(client.ipBucket(), permits, quota.ipDailyLimit());
+        }
+        return backend.refund(client.identifier(), permits, quota.dailyLimit());
+    }
+
+    /**
+     * Like {@link #acquire(ClientIdentity, int)}, and for tiers with a token
+     * budget also reserves estimatedTokens, refusing the request if the
+     * budget is spent. The returned charge must be settled once the
+     * generation is over.
+     */
+    public UsageCharge charge(ClientIdentity client, int permits, int estimatedTokens) {
+        Quota quota = quotas.quota(client.tier());
+        String identifier = client.identifier();
+        if (!quota.hasTokenBudget()) {
+            return new UsageCharge(acquire(client, permits), calls -> refund(client, calls), permits, null,
+                    identifier, 0, 0, false);
+        }
+
+        if (!tokenBudget.reserve(identifier, estimatedTokens, quota.dailyTokens())) {
+            logger.info("Token budget of {} spent for {}", quota.dailyTokens(), identifier);
+            RateLimitDecision daily = backend.peek(identifier, quota.dailyLimit());
+            RateLimitDecision refused = new RateLimitDecision(false, daily.used(), daily.limit(),
+                    tokenBudget.resetInSeconds(), daily.resetDate());
+            return new UsageCharge(refused, tokenBudget, identifier, 0, quota.dailyTokens(), true);
+        }
+        RateLimitDecision decision = acquire(client, permits);
+        if (!decision.allowed()) {
+            tokenBudget.adjust(identifier, -estimatedTokens);
+        }
+        return new UsageCharge(decision, calls -> refund(client, calls), permits, tokenBudget, identifier,
+                estimatedTokens, quota.dailyTokens(), false);
+    }
 
-        public UserUsageData() {
-            this.callCount = 0;
-            this.lastResetDate = LocalDate.now();
-            this.lastCallTime = LocalDateTime.now();
+    /**
+     * What {@link #charge} would decide for a single call, without charging
+     * or reserving anything, so a request can be turned away before its body
+     * is read. Only a refusal is final: a pass must still be charged.
+     */
+    public UsageCharge check(ClientIdentity client) {
+        Quota quota = quotas.quota(client.tier());
+        String identifier = client.identifier();
+        RateLimitDecision daily = backend.peek(identifier, quota.dailyLimit());
+        if (daily.allowed() && client.ipBucket() != null) {
+            RateLimitDecision shared = backend.peek(client.ipBucket(), quota.ipDailyLimit());
+            if (!shared.allowed()) {
+                daily = shared;
+            }
         }
+        TokenBudget budget = quota.hasTokenBudget() ? tokenBudget : null;
+        if (budget != null && budget.spent(identifier) >= quota.dailyTokens()) {
+            RateLimitDecision refused = new RateLimitDecision(false, daily.used(), daily.limit(),
+                    tokenBudget.resetInSeconds(), daily.resetDate());
+            return new UsageCharge(refused, budget, identifier, 0, quota.dailyTokens(), true);
+        }
+        if (daily.allowed() && quota.hasMinuteLimit()) {
+            long waitMillis = burstLimiter.waitMillis(identifier, quota);
+            if (waitMillis > 0) {
+                daily = new RateLimitDecision(false, daily.used(), daily.limit(), (waitMillis + 999) / 1000,
+                        daily.resetDate());
+            }
+        }
+        return new UsageCharge(daily, budget, identifier, 0, quota.dailyTokens(), false);
+    }
 
-        // Getters and setters
-        public int getCallCount() { return callCount; }
-        public void setCallCount(int callCount) { this.callCount = callCount; }
-        public LocalDate getLastResetDate() { return lastResetDate; }
-        public void setLastResetDate(LocalDate lastResetDate) { this.lastResetDate = lastResetDate; }
-        public LocalDateTime getLastCallTime() { return lastCallTime; }
-        public void setLastCallTime(LocalDateTime lastCallTime) { this.lastCallTime = lastCallTime; }
+    // Anonymous-client shorthands for tests and benchmarks; requests always go through a ClientIdentity
+    RateLimitDecision acquire(String clientIp, int permits) {
+        return acquire(ClientIdentity.anonymous(clientIp), permits);
     }
 
-    public boolean isAllowed(String identifier) {
-        UserUsageData userData = getUserData(identifier);
-        resetIfNewDay(userData);
-        return userData.getCallCount() < DEFAULT_DAILY_LIMIT;
+    boolean tryAcquire(String clientIp, int permits) {
+        return acquire(clientIp, permits).allowed();
     }
 
-    public void recordUsage(String identifier) {
-        UserUsageData userData = getUserData(identifier);
-        resetIfNewDay(userData);
-        userData.setCallCount(userData.getCallCount() + 1);
-        userData.setLastCallTime(LocalDateTime.now());
-        logger.info("Usage recorded for {}: {}/{}", identifier, userData.getCallCount(), DEFAULT_DAILY_LIMIT);
+    /**
+     * Current daily usage without charging anything; allowed means one more
+     * call would pass the daily limit.
+     */
+    public RateLimitDecision peek(ClientIdentity client) {
+        return backend.peek(client.identifier(), quotas.quota(client.tier()).dailyLimit());
     }
 
-    public Map<String, Object> getUsageInfo(String identifier) {
-        UserUsageData userData = getUserData(identifier);
-        resetIfNewDay(userData);
+    RateLimitDecision peek(String clientIp) {
+        return peek(ClientIdentity.anonymous(clientIp));
+    }
 
-        Map<String, Object> info = new HashMap<>();
-        info.put("currentUsage", userData.getCallCount());
-        info.put("remainingCalls", Math.max(0, DEFAULT_DAILY_LIMIT - userData.getCallCount()));
-        info.put("maxCalls", DEFAULT_DAILY_LIMIT);
-        info.put("canMakeCall", userData.getCallCount() < DEFAULT_DAILY_LIMIT);
-        info.put("lastCallTime", userData.getLastCallTime());
-        info.put("resetDate", userData.getLastResetDate());
+    public ApiUsageResponse getUsageInfo(ClientIdentity client) {
+        Quota quota = quotas.quota(client.tier());
+        ApiUsageResponse usage = ApiUsageResponse.of(peek(client), client.tier());
+        return quota.hasTokenBudget()
+                ? usage.withTokens(tokenBudget.spent(client.identifier()), quota.dailyTokens())
+                : usage;
+    }
 
-        return info;
+    ApiUsageResponse getUsageInfo(String clientIp) {
+        return getUsageInfo(ClientIdentity.anonymous(clientIp));
     }
 
-    private UserUsageData getUserData(String identifier) {
-        return usageTracker.computeIfAbsent(identifier, k -> new UserUsageData());
+    public Quota getQuota(ClientIdentity client) {
+        return quotas.quota(client.tier());
     }
 
-    private void resetIfNewDay(UserUsageData userData) {
-        LocalDate today = LocalDate.now();
-        if (!userData.getLastResetDate().equals(today)) {
-            userData.setCallCount(0);
-            userData.setLastResetDate(today);
-        }
+    public RefillPolicy getPolicy() {
+        return backend.getPolicy();
     }
 
-    @Scheduled(fixedRate = 3600000) // Clean up every hour
-    public void cleanup() {
-        LocalDate cutoff = LocalDate.now().minusDays(2);
-        int before = usageTracker.size();
-        usageTracker.entrySet().removeIf(entry ->
-                entry.getValue().getLastResetDate().isBefore(cutoff));
-        int after = usageTracker.size();
-        if (before != after) {
-            logger.info("Cleaned up {} old usage records", before - after);
-        }
+    /**
+     * Backend gauges for the metrics endpoint.
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = backend.getStats();
+        stats.put("backend", backend.getClass().getSimpleName());
+        stats.put("policy", backend.getPolicy());
+        stats.put("quotas", quotas.getStats());
+        stats.put("minuteLimitedClients", burstLimiter.size());
+        stats.put("tokenBudgetClients", tokenBudget.size());
+        return stats;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,279 @@
+package com.email.writer.ratelimit;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scripting.support.ResourceScriptSource;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits shared by every instance using the same Redis. Each check is one
+ * Lua script run (ratelimit/acquire.lua) that refreshes, checks and charges
+ * the client atomically on the server, with the same semantics as
+ * {@link RefillPolicy}.
+ *
+ * With a lease size above 1, a node reserves up to that many calls per
+ * client in one round trip and hands them out locally until they run out or
+ * the lease expires; unused calls are refunded to Redis. That trades a little
+ * precision across nodes for fewer round trips, and suits larger limits.
+ *
+ * If Redis cannot be reached, calls are allowed or refused depending on
+ * app.rate-limit.redis.fail-open.
+ */
+@Component
+@ConditionalOnProperty(name = "app.rate-limit.backend", havingValue = "redis")
+public class RedisRateLimitBackend implements RateLimitBackend {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisRateLimitBackend.class);
+
+    // Sliding windows still read yesterday's count, so keys outlive a day
+    private static final long KEY_TTL_MILLIS = 2 * RefillPolicy.DAY_MILLIS;
+    private static final long FAIL_CLOSED_RETRY_SECONDS = 60;
+
+    private final StringRedisTemplate redis;
+    private final DefaultRedisScript<List> acquireScript;
+    private final RefillPolicy policy;
+    private final String keyPrefix;
+    private final int leaseSize;
+    private final long leaseMillis;
+    private final boolean failOpen;
+    private final Clock clock;
+
+    private final Map<String, Lease> leases = new ConcurrentHashMap<>();
+    private final AtomicLong roundTrips = new AtomicLong();
+    private final AtomicLong leasedGrants = new AtomicLong();
+    private final AtomicLong refundedPermits = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    @Autowired
+    public RedisRateLimitBackend(StringRedisTemplate redis,
+                                 @Value("${app.rate-limit.policy:DAILY_FIXED_WINDOW}") RefillPolicy policy,
+                                 @Value("${app.rate-limit.redis.key-prefix:rate-limit:}") String keyPrefix,
+                                 @Value("${app.rate-limit.redis.lease-size:1}") int leaseSize,
+                                 @Value("${app.rate-limit.redis.lease-ms:1000}") long leaseMillis,
+                                 @Value("${app.rate-limit.redis.fail-open:true}") boolean failOpen) {
+        this(redis, policy, keyPrefix, leaseSize, leaseMillis, failOpen, RefillPolicy.systemClock());
+    }
+
+    RedisRateLimitBackend(StringRedisTemplate redis, RefillPolicy policy, String keyPrefix, int leaseSize,
+                          long leaseMillis, boolean failOpen, Clock clock) {
+        this.redis = redis;
+        this.policy = policy;
+        this.keyPrefix = keyPrefix;
+        this.leaseSize = Math.max(1, leaseSize);
+        this.leaseMillis = leaseMillis;
+        this.failOpen = failOpen;
+        this.clock = clock;
+
+        this.acquireScript = new DefaultRedisScript<>();
+        acquireScript.setScriptSource(new ResourceScriptSource(new ClassPathResource("ratelimit/acquire.lua")));
+        acquireScript.setResultType(List.class);
+        logger.info("Redis rate limiting with policy {}, lease size {} and fail-{}",
+                policy, this.leaseSize, failOpen ? "open" : "closed");
+    }
+
+    @Override
+    public RateLimitDecision acquire(String identifier, int permits, int limit) {
+        long now = RefillPolicy.localMillis(clock);
+        if (leaseSize <= permits) {
+            try {
+                ScriptResult result = run(identifier, permits, 0, 0, limit, now);
+                return policy.decision(result.allowed, result.state, now, limit);
+            } catch (DataAccessException e) {
+                return unavailable(identifier, limit, now, e);
+            }
+        }
+
+        while (true) {
+            Lease lease = leases.computeIfAbsent(identifier, k -> new Lease());
+            synchronized (lease) {
+                if (lease.retired) {
+                    continue;
+                }
+                if (lease.remaining >= permits && now < lease.expiresAt) {
+                    lease.remaining -= permits;
+                    leasedGrants.incrementAndGet();
+                    return lease.decision(policy, now, limit);
+                }
+
+                // Hand back what is left of the old lease in the same round trip that takes a new one
+                int refund = lease.remaining;
+                try {
+                    ScriptResult result = run(identifier, permits, leaseSize - permits, refund, limit, now);
+                    refundedPermits.addAndGet(refund);
+                    lease.remaining = result.allowed ? result.granted - permits : 0;
+                    lease.expiresAt = now + leaseMillis;
+                    lease.state = result.state;
+                    lease.limit = limit;
+                    return result.allowed
+                            ? lease.decision(policy, now, limit)
+                            : policy.decision(false, result.state, now, limit);
+                } catch (DataAccessException e) {
+                    return unavailable(identifier, limit, now, e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public RateLimitDecision peek(String identifier, int limit) {
+        long now = RefillPolicy.localMillis(clock);
+        try {
+            ScriptResult result = run(identifier, 0, 0, 0, limit, now);
+            Lease lease = leases.get(identifier);
+            int unused = 0;
+            if (lease != null) {
+                synchronized (lease) {
+                    unused = now < lease.expiresAt ? lease.remaining : 0;
+                }
+            }
+            RateLimitDecision decision = policy.decision(true, result.state, now, limit);
+            int used = Math.max(0, decision.used() - unused);
+            return new RateLimitDecision(used + 1 <= limit, used, limit, decision.resetInSeconds(), decision.resetDate());
+        } catch (DataAccessException e) {
+            return unavailable(identifier, limit, now, e);
+        }
+    }
+
+    @Override
+    public RateLimitDecision refund(String identifier, int permits, int limit) {
+        long now = RefillPolicy.localMillis(clock);
+        Lease lease = leases.get(identifier);
+        if (lease != null) {
+            synchronized (lease) {
+                if (!lease.retired && now < lease.expiresAt) {
+                    // Still counted in Redis; back in the lease, it is handed out again or refunded with the rest
+                    lease.remaining += permits;
+                    return lease.decision(policy, now, limit);
+                }
+            }
+        }
+        try {
+            ScriptResult result = run(identifier, 0, 0, permits, limit, now);
+            refundedPermits.addAndGet(permits);
+            return policy.decision(true, result.state, now, limit);
+        } catch (DataAccessException e) {
+            return unavailable(identifier, limit, now, e);
+        }
+    }
+
+    @Override
+    public RefillPolicy getPolicy() {
+        return policy;
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("leaseSize", leaseSize);
+        stats.put("activeLeases", leases.size());
+        stats.put("roundTrips", roundTrips.get());
+        stats.put("leasedGrants", leasedGrants.get());
+        stats.put("refundedPermits", refundedPermits.get());
+        stats.put("failures", failures.get());
+        stats.put("failOpen", failOpen);
+        return stats;
+    }
+
+    /**
+     * Returns the unused part of expired leases to Redis so other nodes can
+     * spend it.
+     */
+    @Scheduled(fixedDelayString = "${app.rate-limit.redis.lease-ms:1000}")
+    public void expireLeases() {
+        long now = RefillPolicy.localMillis(clock);
+        leases.forEach((identifier, lease) -> {
+            synchronized (lease) {
+                if (now >= lease.expiresAt) {
+                    retire(identifier, lease, now);
+                }
+            }
+        });
+    }
+
+    @PreDestroy
+    public void releaseLeases() {
+        long now = RefillPolicy.localMillis(clock);
+        leases.forEach((identifier, lease) -> {
+            synchronized (lease) {
+                retire(identifier, lease, now);
+            }
+        });
+    }
+
+    // Caller holds the lease's lock
+    private void retire(String identifier, Lease lease, long now) {
+        lease.retired = true;
+        leases.remove(identifier, lease);
+        if (lease.remaining > 0) {
+            try {
+                run(identifier, 0, 0, lease.remaining, lease.limit, now);
+                refundedPermits.addAndGet(lease.remaining);
+            } catch (DataAccessException e) {
+                failures.incrementAndGet();
+                logger.warn("Could not refund {} leased calls for {}: {}", lease.remaining, identifier, e.getMessage());
+            }
+            lease.remaining = 0;
+        }
+    }
+
+    private ScriptResult run(String identifier, int permits, int extra, int refund, int limit, long now) {
+        roundTrips.incrementAndGet();
+        List<?> reply = redis.execute(acquireScript, List.of(keyPrefix + identifier),
+                policy.name(), Long.toString(now), Integer.toString(limit), Integer.toString(permits),
+                Integer.toString(extra), Integer.toString(refund), Long.toString(KEY_TTL_MILLIS));
+        long stamp = ((Number) reply.get(2)).longValue();
+        long previous = ((Number) reply.get(3)).longValue();
+        long current = ((Number) reply.get(4)).longValue();
+        return new ScriptResult(((Number) reply.get(0)).intValue() == 1, ((Number) reply.get(1)).intValue(),
+                policy.packed(stamp, previous, current));
+    }
+
+    private RateLimitDecision unavailable(String identifier, int limit, long now, DataAccessException e) {
+        failures.incrementAndGet();
+        logger.warn("Rate limit backend unavailable for {}, failing {}: {}",
+                identifier, failOpen ? "open" : "closed", e.getMessage());
+        LocalDate today = LocalDate.ofEpochDay(RefillPolicy.day(now));
+        return failOpen
+                ? new RateLimitDecision(true, 0, limit, 0, today)
+                : new RateLimitDecision(false, limit, limit, FAIL_CLOSED_RETRY_SECONDS, today);
+    }
+
+    private record ScriptResult(boolean allowed, int granted, long state) {
+    }
+
+    /**
+     * Calls this node has reserved in Redis for one client but not yet used.
+     * state is the client's usage in Redis as of the reservation, which
+     * already counts them.
+     */
+    private static final class Lease {
+        int remaining;
+        long expiresAt;
+        long state;
+        int limit;
+        boolean retired;
+
+        RateLimitDecision decision(RefillPolicy policy, long now, int limit) {
+            RateLimitDecision server = policy.decision(true, policy.refresh(state, now, limit), now, limit);
+            return new RateLimitDecision(true, Math.max(0, server.used() - remaining), limit,
+                    server.resetInSeconds(), server.resetDate());
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.email.writer.ratelimit;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * How a client's allowance comes back over time. Each policy keeps its whole
+ * per-client state in a single packed long, so {@link InMemoryRateLimitBackend}
+ * can check and charge with one compareAndSet.
+ *
+ * Time is passed in as local epoch millis (UTC millis plus the zone offset),
+ * so "day" boundaries fall at local midnight like the original LocalDate-based
+ * reset did.
+ */
+public enum RefillPolicy {
+
+    /**
+     * Up to limit calls per calendar day, all restored at midnight.
+     * State: [epochDay:32][count:32].
+     */
+    DAILY_FIXED_WINDOW {
+        @Override
+        long refresh(long state, long nowMillis, int limit) {
+            long day = day(nowMillis);
+            return (state >>> 32) == day ? state : day << 32;
+        }
+
+        @Override
+        double used(long state, long nowMillis, int limit) {
+            return state & LOW_32;
+        }
+
+        @Override
+        long add(long state, int permits) {
+            return (state & ~LOW_32) | Math.min((state & LOW_32) + permits, LOW_32);
+        }
+
+        @Override
+        long refund(long state, int permits) {
+            return (state & ~LOW_32) | Math.max(0, (state & LOW_32) - permits);
+        }
+
+        @Override
+        long resetInMillis(long state, long nowMillis, int limit) {
+            return (day(nowMillis) + 1) * DAY_MILLIS - nowMillis;
+        }
+    },
+
+    /**
+     * Up to limit calls in any 24 hours, approximated from today's and
+     * yesterday's counts with yesterday's weighted by how much of it still
+     * falls inside the window. Avoids the double allowance a fixed window
+     * gives across midnight.
+     * State: [epochDay:24][previous:20][current:20].
+     */
+    SLIDING_WINDOW {
+        @Override
+        long refresh(long state, long nowMillis, int limit) {
+            long day = day(nowMillis) & MASK_24;
+            long stateDay = state >>> 40;
+            if (stateDay == day) {
+                return state;
+            }
+            if (stateDay == ((day - 1) & MASK_24)) {
+                // Today's calls become yesterday's
+                return (day << 40) | ((state & MASK_20) << 20);
+            }
+            return day << 40;
+        }
+
+        @Override
+        double used(long state, long nowMillis, int limit) {
+            long previous = (state >>> 20) & MASK_20;
+            long current = state & MASK_20;
+            double elapsedToday = (double) Math.floorMod(nowMillis, DAY_MILLIS) / DAY_MILLIS;
+            return previous * (1.0 - elapsedToday) + current;
+        }
+
+        @Override
+        long add(long state, int permits) {
+            return (state & ~MASK_20) | Math.min((state & MASK_20) + permits, MASK_20);
+        }
+
+        @Override
+        long refund(long state, int permits) {
+            // Only today's calls can be handed back
+            return (state & ~MASK_20) | Math.max(0, (state & MASK_20) - permits);
+        }
+
+        @Override
+        long resetInMillis(long state, long nowMillis, int limit) {
+            // Yesterday's calls have fully aged out at the next midnight
+            return (day(nowMillis) + 1) * DAY_MILLIS - nowMillis;
+        }
+    },
+
+    /**
+     * A bucket of limit calls that refills continuously at limit per day, so
+     * a client who spends everything gets calls back through the day instead
+     * of all at midnight. Usage is tracked in thousandths of a call.
+     * State: [lastRefillSecond:32][usedMilliCalls:32].
+     */
+    TOKEN_BUCKET {
+        @Override
+        long refresh(long state, long nowMillis, int limit) {
+            long second = nowMillis / 1000;
+            long usedMilli = state & LOW_32;
+            if (usedMilli == 0) {
+                return second << 32;
+            }
+            // After a day the bucket is full anyway; clamping also keeps the product below from overflowing
+            long elapsed = Math.min(second - (state >>> 32), DAY_SECONDS);
+            long refill = elapsed * limit * 1000L / DAY_SECONDS;
+            if (refill <= 0) {
+                // Keep the old timestamp so sub-milli refills accumulate
+                return state;
+            }
+            return (second << 32) | Math.max(0, usedMilli - refill);
+        }
+
+        @Override
+        double used(long state, long nowMillis, int limit) {
+            return (state & LOW_32) / 1000.0;
+        }
+
+        @Override
+        long add(long state, int permits) {
+            return (state & ~LOW_32) | Math.min((state & LOW_32) + permits * 1000L, LOW_32);
+        }
+
+        @Override
+        long refund(long state, int permits) {
+            return (state & ~LOW_32) | Math.max(0, (state & LOW_32) - permits * 1000L);
+        }
+
+        @Override
+        long resetInMillis(long state, long nowMillis, int limit) {
+            long excessMilli = (state & LOW_32) - (limit - 1) * 1000L;
+            if (excessMilli <= 0) {
+                return 0;
+            }
+            // Time until enough has refilled for one more call
+            return (excessMilli * DAY_MILLIS + limit * 1000L - 1) / (limit * 1000L);
+        }
+    };
+
+    static final long DAY_MILLIS = 86_400_000L;
+    private static final long DAY_SECONDS = 86_400L;
+    private static final long LOW_32 = 0xFFFF_FFFFL;
+    private static final long MASK_24 = 0xFF_FFFFL;
+    private static final long MASK_20 = 0xF_FFFFL;
+
+    /**
+     * Rolls the window over or applies refill up to nowMillis. Pure: the
+     * caller decides whether to publish the result.
+     */
+    abstract long refresh(long state, long nowMillis, int limit);
+
+    /** Calls counted against the limit for a refreshed state; fractional for the approximating policies. */
+    abstract double used(long state, long nowMillis, int limit);
+
+    /** Charges permits to a refreshed state, saturating instead of overflowing. */
+    abstract long add(long state, int permits);
+
+    /** Gives back permits charged earlier to a refreshed state, stopping at no usage. */
+    abstract long refund(long state, int permits);
+
+    /** Milliseconds until usage next drops, for a refreshed state. */
+    abstract long resetInMillis(long state, long nowMillis, int limit);
+
+    /**
+     * The clock every rate limiting component runs on unless a test supplies
+     * its own: call counts, token budgets and per-minute pacing all roll over
+     * at the same local midnight.
+     */
+    static Clock systemClock() {
+        return Clock.systemDefaultZone();
+    }
+
+    static long day(long nowMillis) {
+        return Math.floorDiv(nowMillis, DAY_MILLIS);
+    }
+
+    /** Wall-clock millis shifted into the clock's zone, so day arithmetic lands on local midnight. */
+    static long localMillis(Clock clock) {
+        long millis = clock.millis();
+        return millis + clock.getZone().getRules().getOffset(Instant.ofEpochMilli(millis)).getTotalSeconds() * 1000L;
+    }
+
+    /**
+     * Packs state kept as separate fields elsewhere (Redis) into this
+     * policy's layout: stamp is the day, or the refill second for
+     * TOKEN_BUCKET; previous is only used by SLIDING_WINDOW.
+     */
+    long packed(long stamp, long previous, long current) {
+        return switch (this) {
+            case DAILY_FIXED_WINDOW, TOKEN_BUCKET -> (stamp << 32) | (current & LOW_32);
+            case SLIDING_WINDOW -> ((stamp & MASK_24) << 40) | ((previous & MASK_20) << 20) | (current & MASK_20);
+        };
+    }
+
+    /** What a client is told about a refreshed state. */
+    RateLimitDecision decision(boolean allowed, long state, long nowMillis, int limit) {
+        int used = (int) Math.ceil(used(state, nowMillis, limit) - 1e-9);
+        long resetInSeconds = (resetInMillis(state, nowMillis, limit) + 999) / 1000;
+        return new RateLimitDecision(allowed, Math.min(used, limit), limit, resetInSeconds,
+                LocalDate.ofEpochDay(day(nowMillis)));
+    }
+}
@@ -0,0 +1,75 @@
+package com.email.writer.ratelimit;
+
+import java.time.Clock;
+
+/**
+ * Gemini tokens spent per client per day, for tiers with a token budget.
+ * A call reserves its estimated cost up front and is settled to the actual
+ * usageMetadata count when it finishes. A reservation is granted while the
+ * client has any budget left, so a client can overshoot by at most one
+ * call's tokens; concurrent calls see each other's reservations.
+ *
+ * Kept on this instance only, in the same [epochDay:32][tokens:32] layout
+ * and daily generations as {@link RefillPolicy#DAILY_FIXED_WINDOW} counts.
+ */
+class TokenBudget {
+
+    private static final long LOW_32 = 0xFFFF_FFFFL;
+
+    private final GenerationalUsageStore spent;
+    private final Clock clock;
+
+    TokenBudget(Clock clock) {
+        this.clock = clock;
+        this.spent = new GenerationalUsageStore(ConcurrentMapUsageStore::new,
+                RefillPolicy.day(RefillPolicy.localMillis(clock)));
+    }
+
+    /** Reserves tokens if the client has budget left; false if it has none. */
+    boolean reserve(String identifier, int tokens, int budget) {
+        long now = rollOver();
+        // Written by the update function; its last run is the one whose state got installed
+        boolean[] granted = new boolean[1];
+        spent.update(identifier, stored -> {
+            long current = RefillPolicy.DAILY_FIXED_WINDOW.refresh(stored, now, budget);
+            granted[0] = (current & LOW_32) < budget;
+            return granted[0] ? RefillPolicy.DAILY_FIXED_WINDOW.add(current, tokens) : current;
+        });
+        return granted[0];
+    }
+
+    /** Charges (delta &gt; 0) or refunds (delta &lt; 0) tokens regardless of the budget. */
+    void adjust(String identifier, long delta) {
+        if (delta == 0) {
+            return;
+        }
+        long now = rollOver();
+        spent.update(identifier, stored -> {
+            long current = RefillPolicy.DAILY_FIXED_WINDOW.refresh(stored, now, 0);
+            long tokens = Math.max(0, Math.min((current & LOW_32) + delta, LOW_32));
+            return (current & ~LOW_32) | tokens;
+        });
+    }
+
+    long spent(String identifier) {
+        long now = RefillPolicy.localMillis(clock);
+        return RefillPolicy.DAILY_FIXED_WINDOW.refresh(spent.get(identifier), now, 0) & LOW_32;
+    }
+
+    long resetInSeconds() {
+        long now = RefillPolicy.localMillis(clock);
+        return (RefillPolicy.DAILY_FIXED_WINDOW.resetInMillis(0, now, 0) + 999) / 1000;
+    }
+
+    int size() {
+        return spent.size();
+    }
+
+    private long rollOver() {
+        long now = RefillPolicy.localMillis(clock);
+        if (RefillPolicy.day(now) > spent.day()) {
+            spent.advanceTo(RefillPolicy.day(now));
+        }
+        return now;
+    }
+}
@@ -0,0 +1,107 @@
+package com.email.writer.ratelimit;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+
+/**
+ * What one request was charged: the call decision, plus the tokens it
+ * reserved when its tier has a token budget. Hand it to the generator as the
+ * token callback, then {@link #settle()} it once generation has finished or
+ * failed, so the reservation is replaced by what Gemini actually reported.
+ * Calls for work that never ran are given back with {@link #refund(int)}.
+ */
+public final class UsageCharge implements IntConsumer {
+
+    private final boolean allowed;
+    private final IntFunction<RateLimitDecision> refunds;
+    private final int permits;
+    private final TokenBudget budget;
+    private final String identifier;
+    private final long reservedTokens;
+    private final int dailyTokens;
+    private final boolean tokensExhausted;
+    private final LongAdder actualTokens = new LongAdder();
+    private final AtomicBoolean settled = new AtomicBoolean();
+    private final AtomicInteger refunded = new AtomicInteger();
+    private volatile RateLimitDecision decision;
+
+    UsageCharge(RateLimitDecision decision, TokenBudget budget, String identifier, long reservedTokens,
+                int dailyTokens, boolean tokensExhausted) {
+        this(decision, null, 0, budget, identifier, reservedTokens, dailyTokens, tokensExhausted);
+    }
+
+    // refunds gives calls back to the backend and reports the usage after
+    UsageCharge(RateLimitDecision decision, IntFunction<RateLimitDecision> refunds, int permits, TokenBudget budget,
+                String identifier, long reservedTokens, int dailyTokens, boolean tokensExhausted) {
+        this.allowed = decision.allowed();
+        this.decision = decision;
+        this.refunds = refunds;
+        this.permits = permits;
+        this.budget = budget;
+        this.identifier = identifier;
+        this.reservedTokens = reservedTokens;
+        this.dailyTokens = dailyTokens;
+        this.tokensExhausted = tokensExhausted;
+    }
+
+    public boolean allowed() {
+        return allowed;
+    }
+
+    /** The usage as of the charge, or as of the latest refund. */
+    public RateLimitDecision decision() {
+        return decision;
+    }
+
+    /**
+     * Gives back calls charged for work that never ran, such as a request
+     * that could not be started or a variant that failed; never more than
+     * were charged in total. The per-minute allowance is not given back.
+     */
+    public void refund(int calls) {
+        if (!allowed || refunds == null || calls <= 0) {
+            return;
+        }
+        int before = refunded.getAndUpdate(done -> Math.min(permits, done + calls));
+        int giveBack = Math.min(permits, before + calls) - before;
+        if (giveBack > 0) {
+            RateLimitDecision after = refunds.apply(giveBack);
+            decision = new RateLimitDecision(true, after.used(), after.limit(), after.resetInSeconds(),
+                    after.resetDate());
+        }
+    }
+
+    /** Records tokens Gemini reported for one upstream call made for this request. */
+    @Override
+    public void accept(int tokens) {
+        actualTokens.add(tokens);
+    }
+
+    /** Replaces the reservation with the reported usage; later calls do nothing. */
+    public void settle() {
+        if (budget != null && allowed && settled.compareAndSet(false, true)) {
+            budget.adjust(identifier, actualTokens.sum() - reservedTokens);
+        }
+    }
+
+    public String rejectionMessage() {
+        return tokensExhausted
+                ? "You've used today's generation budget of " + dailyTokens + " tokens. Please try again tomorrow."
+                : decision.rejectionMessage();
+    }
+
+    // Call usage, plus token usage when the client has a budget
+    public void putUsageInfo(Map<String, Object> response) {
+        decision.putUsageInfo(response);
+        if (budget != null) {
+            long spent = budget.spent(identifier);
+            response.put("tokensUsed", spent);
+            response.put("tokenBudget", dailyTokens);
+            response.put("remainingTokens", Math.max(0, dailyTokens - spent));
+        }
+    }
+}
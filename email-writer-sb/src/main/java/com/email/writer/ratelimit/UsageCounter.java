@@ -0,0 +1,56 @@
+package com.email.writer.ratelimit;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+
+/**
+ * Last flushed usage state of one client, so limits survive a restart.
+ * state is only meaningful under the policy that wrote it.
+ */
+@Entity
+@Table(name = "rate_limit_usage", indexes = {
+        @Index(name = "idx_usage_updated_at", columnList = "updated_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UsageCounter implements Persistable<String> {
+
+    @Id
+    @Column(length = 128)
+    private String identifier;
+
+    @Column(nullable = false)
+    private long state;
+
+    @Column(nullable = false, length = 32)
+    private String policy;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    // Set on counters built for a flush that are not in the table yet, so saving them skips the merge lookup
+    @Transient
+    private boolean fresh;
+
+    @Override
+    public String getId() {
+        return identifier;
+    }
+
+    @Override
+    public boolean isNew() {
+        return fresh;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markStored() {
+        fresh = false;
+    }
+}
@@ -0,0 +1,27 @@
+package com.email.writer.ratelimit;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface UsageCounterRepository extends JpaRepository<UsageCounter, String> {
+
+    /**
+     * Counters written under the given policy since the cutoff, for recovery
+     */
+    Slice<UsageCounter> findByPolicyAndUpdatedAtAfter(String policy, LocalDateTime since, Pageable pageable);
+
+    /**
+     * Drop counters no policy still reads
+     */
+    @Modifying
+    @Query("DELETE FROM UsageCounter u WHERE u.updatedAt < :before")
+    int deleteUpdatedBefore(@Param("before") LocalDateTime before);
+}
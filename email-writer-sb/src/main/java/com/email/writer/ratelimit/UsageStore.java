@@ -0,0 +1,41 @@
+package com.email.writer.ratelimit;
+
+import java.util.function.LongPredicate;
+import java.util.function.LongUnaryOperator;
+import java.util.function.Supplier;
+
+/**
+ * Where {@link RateLimitingService} keeps each client's packed usage state
+ * (layout per {@link RefillPolicy}). A state of 0 means the client has not
+ * been seen, which every policy reads as no usage, so stores never need to
+ * hold idle clients.
+ */
+public interface UsageStore {
+
+    /** The client's state, or 0 if it is not tracked. */
+    long get(String identifier);
+
+    /**
+     * Atomically replaces the client's state with update(state) and returns
+     * the state that was installed. Under contention update may run more than
+     * once; the installed state is always the result of its last run.
+     */
+    long update(String identifier, LongUnaryOperator update);
+
+    /** Stops tracking the client and returns its last state, or 0 if it was not tracked. */
+    long remove(String identifier);
+
+    /** Drops every client whose state matches idle; returns how many were dropped. */
+    int removeIf(LongPredicate idle);
+
+    int size();
+
+    /** Creates empty stores of the kind named by app.rate-limit.store. */
+    static Supplier<UsageStore> factory(String name) {
+        return switch (name) {
+            case "concurrent-map" -> ConcurrentMapUsageStore::new;
+            case "compact" -> CompactUsageStore::new;
+            default -> throw new IllegalArgumentException("Unknown rate limit store: " + name);
+        };
+    }
+}
@@ -0,0 +1,182 @@
+package com.email.writer.ratelimit;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * Write-behind persistence for rate-limit state. Charges only note the
+ * client's new state in memory; a background flush writes every client
+ * changed since the last one in a single batch, either on a timer or once
+ * enough changes have piled up. A client charged many times between
+ * flushes is written once. At startup the saved state is loaded back, so a
+ * restart loses at most the last flush interval of charges.
+ */
+@Component
+@ConditionalOnProperty(name = "app.rate-limit.persistence.enabled", havingValue = "true")
+public class UsageWriteBehind {
+
+    private static final Logger logger = LoggerFactory.getLogger(UsageWriteBehind.class);
+
+    // Every policy treats state untouched for a full day as idle, so older rows are dead
+    private static final int RETENTION_DAYS = 2;
+    private static final int BATCH_SIZE = 500;
+
+    private final UsageCounterRepository repository;
+    private final TransactionTemplate transactionTemplate;
+    private final RefillPolicy policy;
+    private final int flushThreshold;
+
+    // Latest unflushed state per client
+    private final Map<String, Long> pending = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingUpdates = new AtomicInteger();
+    private final AtomicBoolean flushQueued = new AtomicBoolean();
+    private final ExecutorService flusher = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "rate-limit-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong rowsWritten = new AtomicLong();
+    private final AtomicLong flushFailures = new AtomicLong();
+
+    public UsageWriteBehind(UsageCounterRepository repository,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${app.rate-limit.policy:DAILY_FIXED_WINDOW}") RefillPolicy policy,
+                            @Value("${app.rate-limit.persistence.flush-threshold:500}") int flushThreshold) {
+        this.repository = repository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.policy = policy;
+        this.flushThreshold = flushThreshold;
+    }
+
+    /**
+     * Notes a client's new state; never touches the database on the caller's thread.
+     */
+    public void record(String identifier, long state) {
+        pending.put(identifier, state);
+        if (pendingUpdates.incrementAndGet() >= flushThreshold && flushQueued.compareAndSet(false, true)) {
+            flusher.execute(() -> {
+                flushQueued.set(false);
+                flush();
+            });
+        }
+    }
+
+    /**
+     * Feeds every recent counter saved under the current policy to restore.
+     * Returns how many were loaded.
+     */
+    public int load(BiConsumer<String, Long> restore) {
+        LocalDateTime since = LocalDateTime.now().minusDays(RETENTION_DAYS);
+        int loaded = 0;
+        Pageable page = PageRequest.of(0, BATCH_SIZE, Sort.by("identifier"));
+        while (true) {
+            Slice<UsageCounter> counters = repository.findByPolicyAndUpdatedAtAfter(policy.name(), since, page);
+            for (UsageCounter counter : counters) {
+                restore.accept(counter.getIdentifier(), counter.getState());
+                loaded++;
+            }
+            if (!counters.hasNext()) {
+                break;
+            }
+            page = counters.nextPageable();
+        }
+        logger.info("Recovered {} rate limit counters for policy {}", loaded, policy);
+        return loaded;
+    }
+
+    @Scheduled(fixedDelayString = "${app.rate-limit.persistence.flush-interval-ms:5000}")
+    public synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        pendingUpdates.set(0);
+        Map<String, Long> batch = new HashMap<>(pending);
+        try {
+            List<String> identifiers = new ArrayList<>(batch.keySet());
+            for (int from = 0; from < identifiers.size(); from += BATCH_SIZE) {
+                List<String> chunk = identifiers.subList(from, Math.min(from + BATCH_SIZE, identifiers.size()));
+                transactionTemplate.executeWithoutResult(status -> writeChunk(chunk, batch));
+            }
+            // Anything charged again while we were writing stays pending for the next flush
+            batch.forEach((identifier, state) -> pending.remove(identifier, state));
+            flushes.incrementAndGet();
+            rowsWritten.addAndGet(batch.size());
+            logger.debug("Flushed {} rate limit counters", batch.size());
+        } catch (Exception e) {
+            flushFailures.incrementAndGet();
+            logger.error("Failed to flush {} rate limit counters, will retry", batch.size(), e);
+        }
+    }
+
+    // One lookup for the chunk, then updates and inserts go out as JDBC batches
+    private void writeChunk(List<String> identifiers, Map<String, Long> states) {
+        LocalDateTime now = LocalDateTime.now();
+        Map<String, UsageCounter> existing = new HashMap<>();
+        repository.findAllById(identifiers).forEach(counter -> existing.put(counter.getIdentifier(), counter));
+
+        List<UsageCounter> counters = new ArrayList<>(identifiers.size());
+        for (String identifier : identifiers) {
+            UsageCounter counter = existing.get(identifier);
+            if (counter == null) {
+                counter = new UsageCounter(identifier, 0L, null, null, true);
+            }
+            counter.setState(states.get(identifier));
+            counter.setPolicy(policy.name());
+            counter.setUpdatedAt(now);
+            counters.add(counter);
+        }
+        repository.saveAll(counters);
+    }
+
+    @Scheduled(fixedRate = 3600000)
+    public void purgeExpired() {
+        Integer removed = transactionTemplate.execute(status ->
+                repository.deleteUpdatedBefore(LocalDateTime.now().minusDays(RETENTION_DAYS)));
+        if (removed != null && removed > 0) {
+            logger.info("Purged {} expired rate limit counters", removed);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("pending", pending.size());
+        stats.put("flushes", flushes.get());
+        stats.put("rowsWritten", rowsWritten.get());
+        stats.put("flushFailures", flushFailures.get());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        flusher.shutdown();
+        flusher.awaitTermination(10, TimeUnit.SECONDS);
+        flush();
+    }
+}
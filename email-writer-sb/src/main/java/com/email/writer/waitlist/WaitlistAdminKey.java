@@ -0,0 +1,33 @@
+package com.email.writer.waitlist;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * The key the waitlist admin endpoints expect in the Admin-Key header, from
+ * app.waitlist.admin.secret-key (ADMIN_SECRET_KEY). With no key configured
+ * the admin endpoints refuse every request.
+ */
+@Component
+@Slf4j
+public class WaitlistAdminKey {
+
+    private final byte[] key;
+
+    public WaitlistAdminKey(@Value("${app.waitlist.admin.secret-key:}") String key) {
+        this.key = key.isBlank() ? null : key.getBytes(StandardCharsets.UTF_8);
+        if (this.key == null) {
+            log.warn("No waitlist admin key configured; the waitlist admin endpoints are disabled");
+        }
+    }
+
+    /** Compared in constant time, so response timing says nothing about the key. */
+    public boolean matches(String candidate) {
+        return key != null && candidate != null
+                && MessageDigest.isEqual(key, candidate.getBytes(StandardCharsets.UTF_8));
+    }
+}
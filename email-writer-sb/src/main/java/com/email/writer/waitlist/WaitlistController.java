@@ -1,14 +1,19 @@
 package com.email.writer.waitlist;
 
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/waitlist")
@@ -22,6 +27,8 @@ import java.util.Map;
 public class WaitlistController {
 
     private final WaitlistService waitlistService;
+    private final WaitlistExporter waitlistExporter;
+    private final WaitlistAdminKey waitlistAdminKey;
 
     /**
      * Join the Pro waitlist
@@ -41,7 +48,7 @@ public class WaitlistController {
             );
 
             WaitlistEntry savedEntry = waitlistService.addToWaitlist(entry);
-            long position = waitlistService.getWaitlistPosition(savedEntry.getEmail());
+            long position = savedEntry.getPosition();
             long totalCount = waitlistService.getWaitlistCount();
 
             Map<String, Object> response = new HashMap<>();
@@ -104,15 +111,11 @@ public class WaitlistController {
     @GetMapping("/check/{email}")
     public ResponseEntity<Map<String, Object>> checkEmail(@PathVariable String email) {
         try {
-            boolean exists = waitlistService.isEmailInWaitlist(email);
+            Optional<Long> position = waitlistService.findWaitlistPosition(email);
 
             Map<String, Object> response = new HashMap<>();
-            response.put("exists", exists);
-
-            if (exists) {
-                long position = waitlistService.getWaitlistPosition(email);
-                response.put("position", position);
-            }
+            response.put("exists", position.isPresent());
+            position.ifPresent(value -> response.put("position", value));
 
             return ResponseEntity.ok(response);
 
@@ -133,8 +136,7 @@ public class WaitlistController {
     public ResponseEntity<Map<String, Object>> getDetailedStats(
             @RequestHeader(value = "Admin-Key", required = false) String adminKey) {
 
-        // Simple admin authentication - replace with proper auth in production
-        if (!"your-admin-secret-key".equals(adminKey)) {
+        if (!waitlistAdminKey.matches(adminKey)) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
         }
 
@@ -147,4 +149,34 @@ public class WaitlistController {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Admin endpoint to download the whole waitlist as CSV or NDJSON,
+     * streamed to the client page by page
+     */
+    @GetMapping("/admin/export")
+    public void exportWaitlist(
+            @RequestHeader(value = "Admin-Key", required = false) String adminKey,
+            @RequestParam(value = "format", defaultValue = "csv") String format,
+            HttpServletResponse response) throws IOException {
+
+        if (!waitlistAdminKey.matches(adminKey)) {
+            response.setStatus(HttpStatus.FORBIDDEN.value());
+            return;
+        }
+
+        WaitlistExporter.Format exportFormat;
+        try {
+            exportFormat = WaitlistExporter.Format.valueOf(format.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpStatus.BAD_REQUEST.value(), "Unsupported export format: " + format);
+            return;
+        }
+
+        response.setContentType(exportFormat.getContentType());
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"waitlist." + exportFormat.getExtension() + "\"");
+        waitlistExporter.export(exportFormat, response.getOutputStream());
+    }
+}
@@ -0,0 +1,131 @@
+package com.email.writer.waitlist;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Waitlist totals kept in memory so the stats endpoints never query the
+ * table: the total, signups per source, and signups over the last 24 hours
+ * in a ring of per-minute buckets. Seeded from the database at startup and
+ * bumped when a join is queued, before it is written; a queued join the
+ * database later refuses is taken back with {@link #recordDropped}.
+ *
+ * Counts are per instance, like the waitlist's H2 database.
+ */
+@Component
+@Slf4j
+public class WaitlistCounters {
+
+    private static final int MINUTES_PER_DAY = 24 * 60;
+    private static final String UNKNOWN_SOURCE = "unknown";
+
+    private final WaitlistRepository waitlistRepository;
+    private final Clock clock;
+
+    private final LongAdder total = new LongAdder();
+    private final Map<String, LongAdder> bySource = new ConcurrentHashMap<>();
+
+    // Bucket i counts signups in the minute stamped in bucketMinutes[i]; a stale stamp means an empty bucket
+    private final long[] bucketCounts = new long[MINUTES_PER_DAY];
+    private final long[] bucketMinutes = new long[MINUTES_PER_DAY];
+
+    @Autowired
+    public WaitlistCounters(WaitlistRepository waitlistRepository) {
+        this(waitlistRepository, Clock.systemDefaultZone());
+    }
+
+    WaitlistCounters(WaitlistRepository waitlistRepository, Clock clock) {
+        this.waitlistRepository = waitlistRepository;
+        this.clock = clock;
+    }
+
+    @PostConstruct
+    void init() {
+        total.add(waitlistRepository.getTotalCount());
+        for (Object[] stat : waitlistRepository.getSignupsBySource()) {
+            sourceCounter((String) stat[0]).add((Long) stat[1]);
+        }
+        List<LocalDateTime> recent = waitlistRepository.findSignupTimesSince(LocalDateTime.now(clock).minusDays(1));
+        for (LocalDateTime createdAt : recent) {
+            addToBucket(createdAt);
+        }
+        log.info("Waitlist counters seeded: {} total, {} in the last 24 hours", total.sum(), recent.size());
+    }
+
+    /** Counts a join as soon as it is queued. */
+    public void recordJoin(WaitlistEntry entry) {
+        total.increment();
+        sourceCounter(entry.getSource()).increment();
+        addToBucket(entry.getCreatedAt());
+    }
+
+    /** Takes back a join that was counted but could not be stored. */
+    public void recordDropped(WaitlistEntry entry) {
+        total.decrement();
+        sourceCounter(entry.getSource()).decrement();
+        removeFromBucket(entry.getCreatedAt());
+    }
+
+    public long getTotal() {
+        return total.sum();
+    }
+
+    public Map<String, Long> getSignupsBySource() {
+        Map<String, Long> sources = new HashMap<>();
+        bySource.forEach((source, count) -> sources.put(source, count.sum()));
+        return sources;
+    }
+
+    /** Signups in the 24 hours up to the current minute. */
+    public synchronized long getRecentSignups() {
+        long now = minute(LocalDateTime.now(clock));
+        long recent = 0;
+        for (int i = 0; i < MINUTES_PER_DAY; i++) {
+            if (now - bucketMinutes[i] < MINUTES_PER_DAY) {
+                recent += bucketCounts[i];
+            }
+        }
+        return recent;
+    }
+
+    private synchronized void addToBucket(LocalDateTime createdAt) {
+        long minute = minute(createdAt);
+        int bucket = (int) Math.floorMod(minute, (long) MINUTES_PER_DAY);
+        if (bucketMinutes[bucket] != minute) {
+            if (bucketMinutes[bucket] > minute && bucketCounts[bucket] > 0) {
+                // Older than the minute this bucket already holds, so outside the window
+                return;
+            }
+            bucketMinutes[bucket] = minute;
+            bucketCounts[bucket] = 0;
+        }
+        bucketCounts[bucket]++;
+    }
+
+    private synchronized void removeFromBucket(LocalDateTime createdAt) {
+        long minute = minute(createdAt);
+        int bucket = (int) Math.floorMod(minute, (long) MINUTES_PER_DAY);
+        if (bucketMinutes[bucket] == minute && bucketCounts[bucket] > 0) {
+            bucketCounts[bucket]--;
+        }
+    }
+
+    private LongAdder sourceCounter(String source) {
+        return bySource.computeIfAbsent(source != null ? source : UNKNOWN_SOURCE, s -> new LongAdder());
+    }
+
+    private static long minute(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) / 60;
+    }
+}
@@ -0,0 +1,157 @@
+package com.email.writer.waitlist;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.stream.Stream;
+
+/**
+ * Which emails are on the waitlist, held in memory so that looking up an
+ * email that isn't there never reaches the database. Emails are kept as
+ * 64-bit hashes in an open-addressing table with linear probing, 8 bytes a
+ * slot and no objects, split into independently locked segments.
+ *
+ * A miss is definite; a hit only means "probably", since two emails can
+ * share a hash, so callers confirm hits against the table. Loaded at
+ * startup by streaming the email column and added to on every join.
+ */
+@Component
+@Slf4j
+public class WaitlistEmailIndex {
+
+    private static final int SEGMENT_BITS = 4;
+    private static final int INITIAL_SEGMENT_CAPACITY = 1024;
+
+    private final WaitlistRepository waitlistRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Segment[] segments = new Segment[1 << SEGMENT_BITS];
+
+    @Autowired
+    public WaitlistEmailIndex(WaitlistRepository waitlistRepository, PlatformTransactionManager transactionManager) {
+        this(waitlistRepository, transactionManager, INITIAL_SEGMENT_CAPACITY);
+    }
+
+    WaitlistEmailIndex(WaitlistRepository waitlistRepository, PlatformTransactionManager transactionManager,
+                       int initialSegmentCapacity) {
+        this.waitlistRepository = waitlistRepository;
+        this.transactionTemplate = transactionManager != null ? new TransactionTemplate(transactionManager) : null;
+        if (transactionTemplate != null) {
+            transactionTemplate.setReadOnly(true);
+        }
+        int capacity = Integer.highestOneBit(Math.max(4, initialSegmentCapacity - 1) << 1);
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment(capacity);
+        }
+    }
+
+    @PostConstruct
+    void load() {
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<String> emails = waitlistRepository.streamAllEmails()) {
+                emails.forEach(this::add);
+            }
+        });
+        log.info("Indexed {} waitlist emails", size());
+    }
+
+    /** False if email is certainly not on the waitlist; expects it normalized. */
+    public boolean mightContain(String email) {
+        long hash = hash(email);
+        Segment segment = segmentFor(hash);
+        synchronized (segment) {
+            return segment.contains(hash);
+        }
+    }
+
+    public void add(String email) {
+        long hash = hash(email);
+        Segment segment = segmentFor(hash);
+        synchronized (segment) {
+            segment.add(hash);
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size;
+            }
+        }
+        return size;
+    }
+
+    private Segment segmentFor(long hash) {
+        return segments[(int) (hash >>> (64 - SEGMENT_BITS))];
+    }
+
+    // FNV-1a over the chars, then murmur3's finalizer so the low and high bits both mix; never 0 (empty slot)
+    static long hash(String email) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < email.length(); i++) {
+            h = (h ^ email.charAt(i)) * 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h != 0 ? h : 1;
+    }
+
+    private static final class Segment {
+        long[] hashes;
+        int size;
+
+        Segment(int capacity) {
+            hashes = new long[capacity];
+        }
+
+        boolean contains(long hash) {
+            int mask = hashes.length - 1;
+            for (int slot = (int) hash & mask; hashes[slot] != 0; slot = (slot + 1) & mask) {
+                if (hashes[slot] == hash) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void add(long hash) {
+            if (insert(hashes, hash)) {
+                size++;
+                // Kept at most half full so misses stay short
+                if (size * 2 > hashes.length) {
+                    grow();
+                }
+            }
+        }
+
+        private void grow() {
+            long[] larger = new long[hashes.length * 2];
+            for (long hash : hashes) {
+                if (hash != 0) {
+                    insert(larger, hash);
+                }
+            }
+            hashes = larger;
+        }
+
+        private static boolean insert(long[] table, long hash) {
+            int mask = table.length - 1;
+            int slot = (int) hash & mask;
+            while (table[slot] != 0) {
+                if (table[slot] == hash) {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = hash;
+            return true;
+        }
+    }
+}
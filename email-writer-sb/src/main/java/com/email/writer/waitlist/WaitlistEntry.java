@@ -7,21 +7,23 @@ import jakarta.validation.constraints.Size;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
 
 import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "waitlist_entries", indexes = {
         @Index(name = "idx_email", columnList = "email"),
-        @Index(name = "idx_created_at", columnList = "created_at")
+        @Index(name = "idx_created_at", columnList = "created_at"),
+        @Index(name = "idx_queue_position", columnList = "queue_position", unique = true)
 })
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-public class WaitlistEntry {
+public class WaitlistEntry implements Persistable<Long> {
 
+    // Assigned by WaitlistSequence rather than the database, so inserts can be batched
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
     @NotBlank(message = "Name is required")
@@ -38,12 +40,31 @@ public class WaitlistEntry {
     @Column(name = "created_at", nullable = false)
     private LocalDateTime createdAt;
 
+    // Place in line, handed out in join order by WaitlistSequence (may skip dropped duplicates)
+    @Column(name = "queue_position")
+    private Long position;
+
     @Column(name = "source", length = 50)
     private String source = "website"; // Track where the signup came from
 
     @Column(name = "notified", nullable = false)
     private Boolean notified = false; // Track if we've notified them about Pro launch
 
+    // Set on entries queued for insert, so saving them skips the merge lookup
+    @Transient
+    private boolean fresh;
+
+    @Override
+    public boolean isNew() {
+        return fresh;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markStored() {
+        fresh = false;
+    }
+
     @PrePersist
     protected void onCreate() {
         if (createdAt == null) {
@@ -0,0 +1,11 @@
+package com.email.writer.waitlist;
+
+import java.time.LocalDateTime;
+
+/**
+ * One waitlist entry as exported. Selected as a projection rather than an
+ * entity so a long export never fills the persistence context.
+ */
+public record WaitlistExportRow(Long id, Long position, String name, String email, String source,
+                                LocalDateTime createdAt, Boolean notified) {
+}
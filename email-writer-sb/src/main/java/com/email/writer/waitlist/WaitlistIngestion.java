@@ -0,0 +1,227 @@
+package com.email.writer.waitlist;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-behind for waitlist joins. A join is checked against the queue,
+ * given its id and position, and acknowledged straight away; queued entries
+ * are inserted in batches (one transaction and a few JDBC batches per
+ * batch-size entries) by a background flush.
+ *
+ * Until it is written, an entry is answered from the queue, so lookups by
+ * email see it immediately. An entry the database refuses is dropped and its
+ * position is left unused: as a duplicate if its email turns out to be stored
+ * already, otherwise as a flush failure. Any other failure keeps the batch
+ * queued for the next flush.
+ */
+@Component
+@Slf4j
+public class WaitlistIngestion {
+
+    static final String DUPLICATE_MESSAGE = "This email is already registered in our waitlist!";
+
+    private final WaitlistRepository waitlistRepository;
+    private final WaitlistSequence waitlistSequence;
+    private final WaitlistCounters waitlistCounters;
+    private final WaitlistEmailIndex waitlistEmailIndex;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final int maxPending;
+
+    // Queued entries by email, for duplicate checks and lookups until they are written
+    private final Map<String, WaitlistEntry> pending = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedDeque<WaitlistEntry> queue = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger queuedSinceFlush = new AtomicInteger();
+    private final AtomicBoolean flushQueued = new AtomicBoolean();
+    private final ExecutorService flusher = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "waitlist-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong rowsWritten = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong flushFailures = new AtomicLong();
+
+    public WaitlistIngestion(WaitlistRepository waitlistRepository,
+                             WaitlistSequence waitlistSequence,
+                             WaitlistCounters waitlistCounters,
+                             WaitlistEmailIndex waitlistEmailIndex,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${app.waitlist.ingest.batch-size:500}") int batchSize,
+                             @Value("${app.waitlist.ingest.max-pending:50000}") int maxPending) {
+        this.waitlistRepository = waitlistRepository;
+        this.waitlistSequence = waitlistSequence;
+        this.waitlistCounters = waitlistCounters;
+        this.waitlistEmailIndex = waitlistEmailIndex;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * Queues a normalized entry and returns it with its id and position set.
+     * Throws if the email is already queued or the queue is full.
+     */
+    public WaitlistEntry submit(WaitlistEntry entry) {
+        if (pending.size() >= maxPending) {
+            log.warn("Waitlist queue full with {} pending joins", pending.size());
+            throw new WaitlistException("We're getting a lot of signups right now. Please try again in a moment.");
+        }
+        entry.setCreatedAt(LocalDateTime.now());
+        entry.setFresh(true);
+        waitlistSequence.assign(entry, () -> {
+            // Indexed first, so an email is never queued without being findable
+            waitlistEmailIndex.add(entry.getEmail());
+            if (pending.putIfAbsent(entry.getEmail(), entry) != null) {
+                throw new WaitlistException(DUPLICATE_MESSAGE);
+            }
+            queue.add(entry);
+        });
+        waitlistCounters.recordJoin(entry);
+
+        if (queuedSinceFlush.incrementAndGet() >= batchSize && flushQueued.compareAndSet(false, true)) {
+            flusher.execute(() -> {
+                flushQueued.set(false);
+                flush();
+            });
+        }
+        return entry;
+    }
+
+    public Optional<WaitlistEntry> findPending(String email) {
+        return Optional.ofNullable(pending.get(email));
+    }
+
+    public boolean isPending(String email) {
+        return pending.containsKey(email);
+    }
+
+    @Scheduled(fixedDelayString = "${app.waitlist.ingest.flush-interval-ms:200}")
+    public synchronized void flush() {
+        queuedSinceFlush.set(0);
+        List<WaitlistEntry> batch = new ArrayList<>(batchSize);
+        while (true) {
+            WaitlistEntry entry;
+            while (batch.size() < batchSize && (entry = queue.poll()) != null) {
+                batch.add(entry);
+            }
+            if (batch.isEmpty() || !write(batch)) {
+                return;
+            }
+            flushes.incrementAndGet();
+            batch.clear();
+        }
+    }
+
+    // False if the batch had to be queued again
+    private boolean write(List<WaitlistEntry> batch) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> waitlistRepository.saveAll(batch));
+            written(batch);
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            // Someone in the batch is already in the table; find out who one at a time
+            log.debug("Waitlist batch of {} refused, writing entries one by one: {}", batch.size(), e.getMessage());
+            return writeEach(batch);
+        } catch (RuntimeException e) {
+            flushFailures.incrementAndGet();
+            log.error("Failed to write {} waitlist joins, will retry", batch.size(), e);
+            requeue(batch, 0);
+            return false;
+        }
+    }
+
+    private boolean writeEach(List<WaitlistEntry> batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            WaitlistEntry entry = batch.get(i);
+            entry.setFresh(true);
+            try {
+                transactionTemplate.executeWithoutResult(status -> waitlistRepository.save(entry));
+                written(List.of(entry));
+            } catch (DataIntegrityViolationException e) {
+                boolean stored;
+                try {
+                    stored = waitlistRepository.existsByEmail(entry.getEmail());
+                } catch (RuntimeException lookup) {
+                    flushFailures.incrementAndGet();
+                    log.error("Failed to check waitlist join for {}, will retry", entry.getEmail(), lookup);
+                    requeue(batch, i);
+                    return false;
+                }
+                if (stored) {
+                    log.warn("Dropping waitlist join for {}: already stored", entry.getEmail());
+                    dropped.incrementAndGet();
+                } else {
+                    // Some other constraint refused the row; writing it again would fail the same way
+                    log.error("Discarding waitlist join for {}: refused by the database", entry.getEmail(), e);
+                    flushFailures.incrementAndGet();
+                }
+                pending.remove(entry.getEmail(), entry);
+                waitlistCounters.recordDropped(entry);
+            } catch (RuntimeException e) {
+                flushFailures.incrementAndGet();
+                log.error("Failed to write waitlist join for {}, will retry", entry.getEmail(), e);
+                requeue(batch, i);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void written(List<WaitlistEntry> entries) {
+        for (WaitlistEntry entry : entries) {
+            pending.remove(entry.getEmail(), entry);
+        }
+        rowsWritten.addAndGet(entries.size());
+    }
+
+    // Back at the head of the queue in their original order
+    private void requeue(List<WaitlistEntry> batch, int from) {
+        for (int i = batch.size() - 1; i >= from; i--) {
+            WaitlistEntry entry = batch.get(i);
+            entry.setFresh(true);
+            queue.addFirst(entry);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("pending", pending.size());
+        stats.put("flushes", flushes.get());
+        stats.put("rowsWritten", rowsWritten.get());
+        stats.put("dropped", dropped.get());
+        stats.put("flushFailures", flushFailures.get());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        flusher.shutdown();
+        flusher.awaitTermination(10, TimeUnit.SECONDS);
+        flush();
+    }
+}
@@ -1,13 +1,20 @@
 package com.email.writer.waitlist;
 
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface WaitlistRepository extends JpaRepository<WaitlistEntry, Long> {
@@ -17,6 +24,13 @@ public interface WaitlistRepository extends JpaRepository<WaitlistEntry, Long> {
      */
     boolean existsByEmail(String email);
 
+    /**
+     * Every email, streamed for building the in-memory index; needs an open transaction
+     */
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "1000"))
+    @Query("SELECT w.email FROM WaitlistEntry w")
+    Stream<String> streamAllEmails();
+
     /**
      * Find entry by email
      */
@@ -25,8 +39,25 @@ public interface WaitlistRepository extends JpaRepository<WaitlistEntry, Long> {
     /**
      * Get waitlist position for a specific email
      */
-    @Query("SELECT COUNT(w) FROM WaitlistEntry w WHERE w.createdAt < :createdAt")
-    long countEntriesBeforeDate(@Param("createdAt") LocalDateTime createdAt);
+    @Query("SELECT w.position FROM WaitlistEntry w WHERE w.email = :email")
+    Optional<Long> findPositionByEmail(@Param("email") String email);
+
+    /**
+     * Highest position handed out so far, 0 for an empty waitlist
+     */
+    @Query("SELECT COALESCE(MAX(w.position), 0) FROM WaitlistEntry w")
+    long getMaxPosition();
+
+    /**
+     * Highest id handed out so far, 0 for an empty waitlist
+     */
+    @Query("SELECT COALESCE(MAX(w.id), 0) FROM WaitlistEntry w")
+    long getMaxId();
+
+    /**
+     * Entries that have not been given a position yet
+     */
+    Slice<WaitlistEntry> findByPositionIsNull(Pageable pageable);
 
     /**
      * Get total waitlist count
@@ -35,10 +66,16 @@ public interface WaitlistRepository extends JpaRepository<WaitlistEntry, Long> {
     long getTotalCount();
 
     /**
-     * Get recent signups (last 24 hours)
+     * Get recent signups, newest first, one page at a time
      */
     @Query("SELECT w FROM WaitlistEntry w WHERE w.createdAt >= :since ORDER BY w.createdAt DESC")
-    List<WaitlistEntry> findRecentSignups(@Param("since") LocalDateTime since);
+    List<WaitlistEntry> findRecentSignups(@Param("since") LocalDateTime since, Pageable pageable);
+
+    /**
+     * Signup times since a cutoff, without loading the entries
+     */
+    @Query("SELECT w.createdAt FROM WaitlistEntry w WHERE w.createdAt >= :since")
+    List<LocalDateTime> findSignupTimesSince(@Param("since") LocalDateTime since);
 
     /**
      * Get signups by source
@@ -47,7 +84,23 @@ public interface WaitlistRepository extends JpaRepository<WaitlistEntry, Long> {
     List<Object[]> getSignupsBySource();
 
     /**
-     * Find unnotified entries
+     * Lowest id not notified yet, or empty if everyone has been
+     */
+    @Query("SELECT MIN(w.id) FROM WaitlistEntry w WHERE w.notified = false")
+    Optional<Long> findFirstUnnotifiedId();
+
+    /**
+     * Mark one id range as notified in its own transaction
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE WaitlistEntry w SET w.notified = true WHERE w.notified = false AND w.id BETWEEN :fromId AND :toId")
+    int markNotifiedBetween(@Param("fromId") long fromId, @Param("toId") long toId);
+
+    /**
+     * Next page of export rows after an id, without loading the entries
      */
-    List<WaitlistEntry> findByNotifiedFalseOrderByCreatedAtAsc();
+    @Query("SELECT new com.email.writer.waitlist.WaitlistExportRow(w.id, w.position, w.name, w.email, w.source, "
+            + "w.createdAt, w.notified) FROM WaitlistEntry w WHERE w.id > :afterId ORDER BY w.id")
+    List<WaitlistExportRow> findExportPageAfter(@Param("afterId") long afterId, Pageable pageable);
 }
\ No newline at end of file
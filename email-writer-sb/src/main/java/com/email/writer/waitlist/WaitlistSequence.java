@@ -0,0 +1,96 @@
+package com.email.writer.waitlist;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hands out waitlist positions as a sequence 1, 2, 3... at join time, so
+ * a position is stored on the entry and read back by email instead of being
+ * counted from the table on every lookup. Entry ids come from here
+ * too, continuing from the highest in the table, so inserts need no
+ * database-generated key and Hibernate can batch them.
+ *
+ * Entries from before positions were stored are numbered at startup in
+ * signup order, ties broken by id.
+ *
+ * A position is only taken back if the join fails before it is queued. A
+ * queued join the database later refuses as a duplicate keeps its position
+ * unused, so stored positions can have holes: they are increasing, not
+ * strictly dense.
+ */
+@Component
+@Slf4j
+public class WaitlistSequence {
+
+    private static final int BACKFILL_BATCH_SIZE = 1000;
+
+    private final WaitlistRepository waitlistRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    // Held from picking a position until the entry is queued, so positions follow queue order
+    private final ReentrantLock lock = new ReentrantLock();
+    private long lastPosition;
+    private long lastId;
+
+    public WaitlistSequence(WaitlistRepository waitlistRepository, PlatformTransactionManager transactionManager) {
+        this.waitlistRepository = waitlistRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @PostConstruct
+    void init() {
+        lastPosition = waitlistRepository.getMaxPosition();
+        lastId = waitlistRepository.getMaxId();
+        long numbered = 0;
+        while (true) {
+            Integer batch = transactionTemplate.execute(status -> numberUnpositioned());
+            if (batch == null || batch == 0) {
+                break;
+            }
+            numbered += batch;
+        }
+        if (numbered > 0) {
+            log.info("Assigned waitlist positions to {} existing entries", numbered);
+        }
+        log.info("Waitlist positions continue after {}", lastPosition);
+    }
+
+    /**
+     * Sets the next id and position on entry and runs enqueue. If enqueue
+     * fails both are taken back for the next entry.
+     */
+    public void assign(WaitlistEntry entry, Runnable enqueue) {
+        lock.lock();
+        try {
+            entry.setId(lastId + 1);
+            entry.setPosition(lastPosition + 1);
+            enqueue.run();
+            lastId++;
+            lastPosition++;
+        } catch (RuntimeException e) {
+            entry.setId(null);
+            entry.setPosition(null);
+            throw e;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Always the first page: numbered entries drop out of the query
+    private int numberUnpositioned() {
+        Slice<WaitlistEntry> entries = waitlistRepository.findByPositionIsNull(
+                PageRequest.of(0, BACKFILL_BATCH_SIZE, Sort.by("createdAt", "id")));
+        for (WaitlistEntry entry : entries) {
+            entry.setPosition(++lastPosition);
+        }
+        return entries.getNumberOfElements();
+    }
+}
@@ -2,8 +2,8 @@ package com.email.writer.waitlist;
 
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.HashMap;
@@ -16,24 +16,31 @@ import java.util.Optional;
 @Slf4j
 public class WaitlistService {
 
+    static final int MAX_RECENT_SIGNUPS = 1000;
+    static final int NOTIFY_CHUNK_SIZE = 1000;
+
     private final WaitlistRepository waitlistRepository;
+    private final WaitlistCounters waitlistCounters;
+    private final WaitlistIngestion waitlistIngestion;
+    private final WaitlistEmailIndex waitlistEmailIndex;
 
     /**
-     * Add a new entry to the waitlist
+     * Add a new entry to the waitlist. The entry is queued and written in the
+     * background; the returned entry already has its position.
      */
-    @Transactional
     public WaitlistEntry addToWaitlist(WaitlistEntry entry) {
         log.info("Adding entry to waitlist for email: {}", entry.getEmail());
+        String email = entry.getEmail().toLowerCase().trim();
 
         // Check if email already exists
-        if (waitlistRepository.existsByEmail(entry.getEmail())) {
-            log.warn("Email already exists in waitlist: {}", entry.getEmail());
-            throw new WaitlistException("This email is already registered in our waitlist!");
+        if (isEmailInWaitlist(email)) {
+            log.warn("Email already exists in waitlist: {}", email);
+            throw new WaitlistException(WaitlistIngestion.DUPLICATE_MESSAGE);
         }
 
         try {
             // Clean and validate the entry
-            entry.setEmail(entry.getEmail().toLowerCase().trim());
+            entry.setEmail(email);
             entry.setName(entry.getName().trim());
 
             // Set default source if not provided
@@ -41,12 +48,14 @@ public class WaitlistService {
                 entry.setSource("website");
             }
 
-            WaitlistEntry savedEntry = waitlistRepository.save(entry);
+            WaitlistEntry savedEntry = waitlistIngestion.submit(entry);
             log.info("Successfully added to waitlist: {} at position {}",
-                    savedEntry.getEmail(), getWaitlistPosition(savedEntry.getEmail()));
+                    savedEntry.getEmail(), savedEntry.getPosition());
 
             return savedEntry;
 
+        } catch (WaitlistException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Error adding entry to waitlist: {}", e.getMessage(), e);
             throw new WaitlistException("Failed to join waitlist. Please try again.");
@@ -57,24 +66,33 @@ public class WaitlistService {
      * Get the position of an email in the waitlist
      */
     public long getWaitlistPosition(String email) {
-        Optional<WaitlistEntry> entry = waitlistRepository.findByEmail(email.toLowerCase().trim());
+        return findWaitlistPosition(email)
+                .orElseThrow(() -> new WaitlistException("Email not found in waitlist"));
+    }
 
-        if (entry.isEmpty()) {
-            throw new WaitlistException("Email not found in waitlist");
+    /**
+     * Get the position of an email, or empty if it is not in the waitlist
+     */
+    public Optional<Long> findWaitlistPosition(String email) {
+        String normalized = email.toLowerCase().trim();
+        if (!waitlistEmailIndex.mightContain(normalized)) {
+            return Optional.empty();
         }
-
-        return waitlistRepository.countEntriesBeforeDate(entry.get().getCreatedAt()) + 1;
+        Optional<WaitlistEntry> queued = waitlistIngestion.findPending(normalized);
+        return queued.isPresent()
+                ? Optional.of(queued.get().getPosition())
+                : waitlistRepository.findPositionByEmail(normalized);
     }
 
     /**
      * Get total waitlist count
      */
     public long getWaitlistCount() {
-        return waitlistRepository.getTotalCount();
+        return waitlistCounters.getTotal();
     }
 
     /**
-     * Get waitlist statistics
+     * Get waitlist statistics, from the in-memory counters
      */
     public Map<String, Object> getWaitlistStats() {
         Map<String, Object> stats = new HashMap<>();
@@ -84,17 +102,16 @@ public class WaitlistService {
         stats.put("totalCount", totalCount);
 
         // Recent signups (last 24 hours)
-        LocalDateTime yesterday = LocalDateTime.now().minusDays(1);
-        List<WaitlistEntry> recentSignups = waitlistRepository.findRecentSignups(yesterday);
-        stats.put("recentSignups", recentSignups.size());
+        stats.put("recentSignups", waitlistCounters.getRecentSignups());
 
         // Signups by source
-        List<Object[]> sourceStats = waitlistRepository.getSignupsBySource();
-        Map<String, Long> sourceMap = new HashMap<>();
-        for (Object[] stat : sourceStats) {
-            sourceMap.put((String) stat[0], (Long) stat[1]);
-        }
-        stats.put("signupsBySource", sourceMap);
+        stats.put("signupsBySource", waitlistCounters.getSignupsBySource());
+
+        // Joins acknowledged but not yet written
+        stats.put("ingestion", waitlistIngestion.getStats());
+
+        // Emails held in the membership index
+        stats.put("indexedEmails", waitlistEmailIndex.size());
 
         log.info("Waitlist stats: {}", stats);
         return stats;
@@ -104,38 +121,56 @@ public class WaitlistService {
      * Check if an email exists in waitlist
      */
     public boolean isEmailInWaitlist(String email) {
-        return waitlistRepository.existsByEmail(email.toLowerCase().trim());
+        String normalized = email.toLowerCase().trim();
+        if (!waitlistEmailIndex.mightContain(normalized)) {
+            return false;
+        }
+        return waitlistIngestion.isPending(normalized) || waitlistRepository.existsByEmail(normalized);
     }
 
     /**
      * Get waitlist entry by email
      */
     public Optional<WaitlistEntry> getWaitlistEntry(String email) {
-        return waitlistRepository.findByEmail(email.toLowerCase().trim());
+        String normalized = email.toLowerCase().trim();
+        if (!waitlistEmailIndex.mightContain(normalized)) {
+            return Optional.empty();
+        }
+        Optional<WaitlistEntry> queued = waitlistIngestion.findPending(normalized);
+        return queued.isPresent() ? queued : waitlistRepository.findByEmail(normalized);
     }
 
     /**
-     * Get recent signups for admin dashboard
+     * Get recent signups for admin dashboard, newest first and at most
+     * MAX_RECENT_SIGNUPS of them
      */
     public List<WaitlistEntry> getRecentSignups(int days) {
         LocalDateTime since = LocalDateTime.now().minusDays(days);
-        return waitlistRepository.findRecentSignups(since);
+        return waitlistRepository.findRecentSignups(since, PageRequest.of(0, MAX_RECENT_SIGNUPS));
     }
 
     /**
-     * Mark entries as notified (for when Pro launches)
+     * Mark entries as notified (for when Pro launches). Walks the ids in
+     * ranges of NOTIFY_CHUNK_SIZE with one bulk UPDATE and one short
+     * transaction per range, so no entries are loaded.
      */
-    @Transactional
     public int markAllAsNotified() {
-        List<WaitlistEntry> unnotified = waitlistRepository.findByNotifiedFalseOrderByCreatedAtAsc();
+        // Queued joins are written first so they are included
+        waitlistIngestion.flush();
 
-        for (WaitlistEntry entry : unnotified) {
-            entry.setNotified(true);
+        Optional<Long> firstId = waitlistRepository.findFirstUnnotifiedId();
+        if (firstId.isEmpty()) {
+            log.info("Marked 0 entries as notified");
+            return 0;
         }
 
-        waitlistRepository.saveAll(unnotified);
-        log.info("Marked {} entries as notified", unnotified.size());
+        long lastId = waitlistRepository.getMaxId();
+        int marked = 0;
+        for (long fromId = firstId.get(); fromId <= lastId; fromId += NOTIFY_CHUNK_SIZE) {
+            marked += waitlistRepository.markNotifiedBetween(fromId, fromId + NOTIFY_CHUNK_SIZE - 1);
+        }
+        log.info("Marked {} entries as notified", marked);
 
-        return unnotified.size();
+        return marked;
     }
-}
\ No newline at end of file
+}
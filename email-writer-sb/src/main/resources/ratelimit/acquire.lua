@@ -0,0 +1,79 @@
+-- Refreshes, refunds, checks and charges one client's usage in a single step.
+-- Mirrors RefillPolicy, with the packed state kept as hash fields:
+--   stamp     day, or last refill second for TOKEN_BUCKET
+--   previous  yesterday's calls (SLIDING_WINDOW only)
+--   current   calls so far, thousandths of a call for TOKEN_BUCKET
+--
+-- KEYS[1]  client key
+-- ARGV     policy, now (local epoch ms), limit, permits, extra, refund, ttl (ms)
+--          extra: further permits to hand out if they fit, for a node's lease
+--          refund: permits leased earlier that went unused
+-- Returns  {allowed, granted, stamp, previous, current}
+
+local policy = ARGV[1]
+local now = tonumber(ARGV[2])
+local limit = tonumber(ARGV[3])
+local permits = tonumber(ARGV[4])
+local extra = tonumber(ARGV[5])
+local refund = tonumber(ARGV[6])
+local ttl = tonumber(ARGV[7])
+
+local DAY = 86400000
+local day = math.floor(now / DAY)
+local fields = redis.call('HMGET', KEYS[1], 'stamp', 'previous', 'current')
+local stamp = tonumber(fields[1])
+local previous = tonumber(fields[2]) or 0
+local current = tonumber(fields[3]) or 0
+local unit = 1
+local used
+
+if policy == 'TOKEN_BUCKET' then
+    unit = 1000
+    local second = math.floor(now / 1000)
+    if stamp == nil or current == 0 then
+        stamp = second
+    else
+        -- Same integer refill as the in-memory policy, so sub-milli refills accumulate
+        local elapsed = math.min(second - stamp, 86400)
+        local refill = math.floor(elapsed * limit * 1000 / 86400)
+        if refill > 0 then
+            current = math.max(0, current - refill)
+            stamp = second
+        end
+    end
+    current = math.max(0, current - refund * unit)
+    used = current
+elseif policy == 'SLIDING_WINDOW' then
+    if stamp == day - 1 then
+        previous = current
+        current = 0
+    elseif stamp ~= day then
+        previous = 0
+        current = 0
+    end
+    stamp = day
+    current = math.max(0, current - refund)
+    used = previous * (1 - (now % DAY) / DAY) + current
+else
+    if stamp ~= day then
+        current = 0
+    end
+    stamp = day
+    current = math.max(0, current - refund)
+    used = current
+end
+
+local allowed = 0
+local granted = 0
+if used + permits * unit <= limit * unit then
+    allowed = 1
+    local spare = math.floor((limit * unit - used) / unit) - permits
+    granted = permits + math.max(0, math.min(extra, spare))
+    current = current + granted * unit
+end
+
+if granted > 0 or refund > 0 then
+    redis.call('HSET', KEYS[1], 'stamp', stamp, 'previous', previous, 'current', current)
+    redis.call('PEXPIRE', KEYS[1], ttl)
+end
+return {allowed, granted, stamp, previous, current}
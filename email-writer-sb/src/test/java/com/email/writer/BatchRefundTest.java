@@ -0,0 +1,127 @@
+package com.email.writer;
+
+import com.email.writer.ratelimit.ClientClassifier;
+import com.email.writer.ratelimit.ClientIdentity;
+import com.email.writer.ratelimit.ClientIpResolver;
+import com.email.writer.ratelimit.InMemoryRateLimitBackend;
+import com.email.writer.ratelimit.QuotaRegistry;
+import com.email.writer.ratelimit.RateLimitingService;
+import com.email.writer.ratelimit.RefillPolicy;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BatchRefundTest {
+
+    private static final String CLIENT_IP = "203.0.113.7";
+
+    // Gemini stand-in: "casual" items fail, everything else succeeds after reporting 100 tokens
+    private final EmailGeneratorService generator = new EmailGeneratorService(null, null, null, null, null, null,
+            new GeminiCallPermits(1, 0)) {
+        @Override
+        public CompletableFuture<String> generateEmailReplyAsync(EmailRequest request, IntConsumer onTokens) {
+            if ("casual".equals(request.getSafeTone())) {
+                return CompletableFuture.failedFuture(new RuntimeException("Gemini API error: 503"));
+            }
+            onTokens.accept(100);
+            return CompletableFuture.completedFuture("Thanks, see you Friday.");
+        }
+    };
+
+    private final BatchGenerationService batchGenerationService = new BatchGenerationService(generator,
+            Validation.buildDefaultValidatorFactory().getValidator());
+    private final RateLimitingService rateLimitingService = new RateLimitingService(
+            new InMemoryRateLimitBackend(RefillPolicy.DAILY_FIXED_WINDOW, "concurrent-map", Optional.empty()),
+            new QuotaRegistry(new StandardEnvironment(), ""));
+    private final EmailGeneratorController controller = new EmailGeneratorController();
+
+    @BeforeEach
+    void wire() {
+        ReflectionTestUtils.setField(batchGenerationService, "maxBatchSize", 20);
+        ReflectionTestUtils.setField(batchGenerationService, "parallelism", 2);
+        ReflectionTestUtils.setField(batchGenerationService, "timeoutMs", 5_000L);
+
+        QuotaRegistry quotas = new QuotaRegistry(new StandardEnvironment(), "");
+        ReflectionTestUtils.setField(controller, "emailGeneratorService", generator);
+        ReflectionTestUtils.setField(controller, "batchGenerationService", batchGenerationService);
+        ReflectionTestUtils.setField(controller, "rateLimitingService", rateLimitingService);
+        ReflectionTestUtils.setField(controller, "clientClassifier", new ClientClassifier(quotas));
+        ReflectionTestUtils.setField(controller, "clientIpResolver", new ClientIpResolver("127.0.0.0/8"));
+        ReflectionTestUtils.setField(controller, "streamTimeoutMs", 5_000L);
+    }
+
+    @Test
+    void failedItemsGiveTheirCallsBack() {
+        Map<String, Object> body = controller.generateEmailReplies(batch("casual", "casual", "casual"),
+                request(), new MockHttpServletResponse()).getBody();
+        assertEquals(0L, body.get("succeeded"));
+        assertEquals(0, usedCalls(), "a batch that failed everywhere costs nothing");
+
+        controller.generateEmailReplies(batch("friendly", "casual", "formal"), request(), new MockHttpServletResponse());
+        assertEquals(2, usedCalls(), "only the items that produced a reply are charged");
+    }
+
+    @Test
+    void streamedBatchRefundsItsFailuresToo() {
+        controller.streamEmailReplies(batch("casual", "friendly"), request(), new MockHttpServletResponse());
+        assertEquals(1, usedCalls());
+    }
+
+    @Test
+    void itemsStillRunningAtTheTimeoutReportNoTokens() {
+        CompletableFuture<String> late = new CompletableFuture<>();
+        AtomicInteger startedLate = new AtomicInteger();
+        AtomicInteger reported = new AtomicInteger();
+        IntConsumer[] lateTokens = new IntConsumer[1];
+        BatchGenerationService slow = new BatchGenerationService(new EmailGeneratorService(null, null, null, null,
+                null, null, new GeminiCallPermits(1, 0)) {
+            @Override
+            public CompletableFuture<String> generateEmailReplyAsync(EmailRequest request, IntConsumer onTokens) {
+                startedLate.incrementAndGet();
+                lateTokens[0] = onTokens;
+                return late;
+            }
+        }, Validation.buildDefaultValidatorFactory().getValidator());
+        ReflectionTestUtils.setField(slow, "parallelism", 1);
+        ReflectionTestUtils.setField(slow, "timeoutMs", 50L);
+
+        List<Map<String, Object>> results = slow.generateAll(batch("friendly", "formal").getRequests(),
+                reported::addAndGet);
+        assertEquals(Boolean.FALSE, results.get(0).get("success"));
+
+        lateTokens[0].accept(500);
+        late.complete("Too late");
+        assertEquals(0, reported.get(), "tokens after the batch returned are not billed");
+        assertEquals(1, startedLate.get(), "items not started by the timeout never start");
+    }
+
+    private int usedCalls() {
+        return rateLimitingService.getUsageInfo(ClientIdentity.anonymous(CLIENT_IP)).currentUsage();
+    }
+
+    private static BatchEmailRequest batch(String... tones) {
+        return new BatchEmailRequest(Arrays.stream(tones)
+                .map(tone -> new EmailRequest("Can we move our call to Friday afternoon?", tone, null))
+                .toList());
+    }
+
+    private static MockHttpServletRequest request() {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/email/generate-replies");
+        request.setRemoteAddr(CLIENT_IP);
+        return request;
+    }
+}
@@ -0,0 +1,51 @@
+package com.email.writer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GeminiCallPermitsTest {
+
+    @Test
+    void queuedCallerGetsTheNextFreedSlot() {
+        GeminiCallPermits permits = new GeminiCallPermits(1, 5_000);
+        CompletableFuture<Void> first = permits.acquireAsync();
+        CompletableFuture<Void> second = permits.acquireAsync();
+        assertTrue(first.isDone());
+        assertFalse(second.isDone());
+        assertEquals(1, permits.getWaiting());
+
+        permits.release(first);
+        assertTrue(second.isDone(), "the freed slot goes straight to the waiter");
+        assertEquals(0, permits.getAvailable());
+
+        permits.release(second);
+        assertEquals(1, permits.getAvailable());
+    }
+
+    @Test
+    void waiterThatGivesUpOrTimesOutHoldsNoSlot() throws Exception {
+        GeminiCallPermits permits = new GeminiCallPermits(1, 50);
+        CompletableFuture<Void> held = permits.acquireAsync();
+
+        CompletableFuture<Void> cancelled = permits.acquireAsync();
+        permits.release(cancelled);
+
+        CompletableFuture<Void> refused = permits.acquireAsync();
+        ExecutionException e = assertThrows(ExecutionException.class, () -> refused.get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause().getMessage().contains("Too many concurrent Gemini calls"));
+        assertEquals(1, permits.getRejections());
+        permits.release(refused);
+
+        permits.release(held);
+        assertEquals(1, permits.getAvailable(), "only the granted slot came back");
+        assertEquals(0, permits.getWaiting());
+    }
+}
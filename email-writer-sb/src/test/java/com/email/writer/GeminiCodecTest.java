@@ -0,0 +1,85 @@
+package com.email.writer;
+
+import com.email.writer.GeminiCodec.Candidate;
+import com.email.writer.GeminiCodec.GeminiResponse;
+import com.email.writer.GeminiCodec.Usage;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GeminiCodecTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final GeminiCodec codec = new GeminiCodec(objectMapper, 0.7);
+
+    @Test
+    void encodesPromptAndSettingsAsOneRequest() throws Exception {
+        JsonNode single = objectMapper.readTree(codec.encodeRequest("Say \"hi\"\n"));
+        assertEquals("Say \"hi\"\n", single.at("/contents/0/parts/0/text").asText());
+        assertEquals(0.7, single.at("/generationConfig/temperature").asDouble());
+        assertEquals(GeminiCodec.MAX_OUTPUT_TOKENS, single.at("/generationConfig/maxOutputTokens").asInt());
+        assertTrue(single.at("/generationConfig/candidateCount").isMissingNode(), "one candidate is the default");
+        assertEquals(4, single.get("safetySettings").size());
+
+        JsonNode several = objectMapper.readTree(codec.encodeRequest("prompt", 3));
+        assertEquals(3, several.at("/generationConfig/candidateCount").asInt());
+
+        assertThrows(IllegalArgumentException.class, () -> codec.encodeRequest("prompt", GeminiCodec.MAX_CANDIDATE_COUNT + 1));
+    }
+
+    @Test
+    void decodesEveryCandidateAndUsage() throws Exception {
+        GeminiResponse response = codec.decodeResponse("""
+                {"candidates":[
+                  {"content":{"parts":[{"text":"Hello "},{"text":"there"}],"role":"model"},
+                   "finishReason":"STOP","safetyRatings":[{"category":"HARM_CATEGORY_HARASSMENT","probability":"NEGLIGIBLE"}]},
+                  {"content":{"parts":[{"text":"Hi"}]},"finishReason":"MAX_TOKENS","index":1}],
+                 "usageMetadata":{"promptTokenCount":12,"candidatesTokenCount":5,"totalTokenCount":17},
+                 "modelVersion":"gemini-2.0-flash"}
+                """);
+
+        assertEquals(List.of(new Candidate("Hello there", "STOP"), new Candidate("Hi", "MAX_TOKENS")),
+                response.candidates());
+        assertEquals(new Usage(12, 5, 17), response.usage());
+    }
+
+    @Test
+    void usageIsNullWhenTheResponseHasNone() throws Exception {
+        GeminiResponse response = codec.decodeResponse("{\"candidates\":[{\"content\":{\"parts\":[{\"text\":\"ok\"}]}}]}"
+                .getBytes());
+
+        assertEquals(List.of(new Candidate("ok", null)), response.candidates());
+        assertNull(response.usage());
+    }
+
+    @Test
+    void blockedRepliesSurfaceTheirFinishReason() throws Exception {
+        EmailGeneratorService service = new EmailGeneratorService(null, null, null, null, null, null,
+                new GeminiCallPermits(1, 0));
+
+        GeminiResponse stopped = codec.decodeResponse("{\"candidates\":[{\"finishReason\":\"SAFETY\"}]}");
+        assertEquals(List.of(new Candidate(null, "SAFETY")), stopped.candidates());
+        RuntimeException e = assertThrows(RuntimeException.class, () -> service.extractResponseTexts(stopped));
+        assertTrue(e.getMessage().contains("finishReason=SAFETY"));
+
+        GeminiResponse blockedPrompt = codec.decodeResponse("{\"promptFeedback\":{\"blockReason\":\"SAFETY\"}}");
+        assertTrue(blockedPrompt.candidates().isEmpty());
+        e = assertThrows(RuntimeException.class, () -> service.extractResponseTexts(blockedPrompt));
+        assertTrue(e.getMessage().contains("No candidates"));
+
+        // One blocked candidate does not hide the usable ones
+        GeminiResponse mixed = codec.decodeResponse("""
+                {"candidates":[{"finishReason":"SAFETY"},{"content":{"parts":[{"text":" Fine \\n"}]},"finishReason":"STOP"}]}
+                """);
+        assertEquals(List.of("Fine"), service.extractResponseTexts(mixed));
+        assertFalse(mixed.candidates().isEmpty());
+    }
+}
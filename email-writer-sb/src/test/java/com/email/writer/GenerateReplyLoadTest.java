@@ -0,0 +1,142 @@
+package com.email.writer;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.condition.JRE;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares generate-reply throughput on platform vs virtual request threads
+ * against a stub Gemini that answers after a fixed delay.
+ *
+ * Run with: mvn test -Dtest=GenerateReplyLoadTest -Dloadtest=true
+ * (the virtual-thread run needs a Java 21+ JVM).
+ */
+@EnabledIfSystemProperty(named = "loadtest", matches = "true")
+class GenerateReplyLoadTest {
+
+    private static final int UPSTREAM_DELAY_MS = 500;
+    private static final int REQUESTS = 600;
+    private static final int CLIENT_CONCURRENCY = 300;
+
+    private static final String GEMINI_RESPONSE =
+            "{\"candidates\":[{\"content\":{\"parts\":[{\"text\":\"Thanks for reaching out.\"}]},\"finishReason\":\"STOP\"}]}";
+
+    private static HttpServer stubGemini;
+
+    @BeforeAll
+    static void startStubGemini() throws Exception {
+        stubGemini = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        stubGemini.setExecutor(Executors.newCachedThreadPool());
+        stubGemini.createContext("/", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            try {
+                Thread.sleep(UPSTREAM_DELAY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = GEMINI_RESPONSE.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        stubGemini.start();
+    }
+
+    @AfterAll
+    static void stopStubGemini() {
+        stubGemini.stop(0);
+    }
+
+    @Test
+    void platformThreads() throws Exception {
+        runLoad("platform", "spring.threads.virtual.enabled=false");
+    }
+
+    @Test
+    @EnabledForJreRange(min = JRE.JAVA_21)
+    void virtualThreads() throws Exception {
+        runLoad("virtual", "spring.threads.virtual.enabled=true");
+    }
+
+    private void runLoad(String mode, String threadingProperty) throws Exception {
+        String geminiUrl = "http://127.0.0.1:" + stubGemini.getAddress().getPort()
+                + "/v1beta/models/stub:generateContent";
+
+        // Command-line style args so they override application.properties
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(EmailWriterSbApplication.class)
+                .run("--" + threadingProperty,
+                        "--server.port=0",
+                        "--server.tomcat.threads.max=50",
+                        "--gemini.api.url=" + geminiUrl,
+                        "--gemini.api.key=load-test",
+                        "--gemini.api.max-concurrent-calls=" + CLIENT_CONCURRENCY,
+                        "--gemini.api.pool.max-total=" + CLIENT_CONCURRENCY,
+                        "--gemini.api.pool.max-per-route=" + CLIENT_CONCURRENCY,
+                        "--gemini.cache.enabled=false",
+                        "--logging.level.com.email.writer=WARN")) {
+
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            URI endpoint = URI.create("http://127.0.0.1:" + port + "/api/email/generate-reply");
+
+            HttpClient client = HttpClient.newBuilder()
+                    .executor(Executors.newFixedThreadPool(CLIENT_CONCURRENCY))
+                    .connectTimeout(Duration.ofSeconds(5))
+                    .build();
+
+            AtomicInteger succeeded = new AtomicInteger();
+            Semaphore clientSlots = new Semaphore(CLIENT_CONCURRENCY);
+            List<CompletableFuture<Void>> calls = new ArrayList<>(REQUESTS);
+
+            long started = System.nanoTime();
+            for (int i = 0; i < REQUESTS; i++) {
+                clientSlots.acquire();
+                // Distinct client addresses so the per-IP daily limit never kicks in
+                HttpRequest request = HttpRequest.newBuilder(endpoint)
+                        .header("Content-Type", "application/json")
+                        .header("X-Forwarded-For", "10." + (i >> 16 & 255) + "." + (i >> 8 & 255) + "." + (i & 255))
+                        .POST(HttpRequest.BodyPublishers.ofString(
+                                "{\"emailContent\":\"Load test email " + i + "\",\"tone\":\"professional\"}"))
+                        .build();
+                calls.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                        .thenAccept(response -> {
+                            if (response.statusCode() == 200) {
+                                succeeded.incrementAndGet();
+                            }
+                        })
+                        .whenComplete((ignored, error) -> clientSlots.release()));
+            }
+            CompletableFuture.allOf(calls.toArray(new CompletableFuture[0])).join();
+            long elapsedMs = (System.nanoTime() - started) / 1_000_000;
+
+            System.out.printf("[%s threads] %d requests, %d ok, %d ms, %.1f req/s%n",
+                    mode, REQUESTS, succeeded.get(), elapsedMs, REQUESTS * 1000.0 / elapsedMs);
+            assertEquals(REQUESTS, succeeded.get());
+        }
+    }
+}
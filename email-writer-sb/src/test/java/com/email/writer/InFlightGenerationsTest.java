@@ -0,0 +1,100 @@
+package com.email.writer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.TaskExecutor;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InFlightGenerationsTest {
+
+    // Fails the test if the blocking path ever needs the executor
+    private static final TaskExecutor NO_EXECUTOR = task -> {
+        throw new AssertionError("blocking calls must not use the executor");
+    };
+
+    private final ExecutorService pool = Executors.newFixedThreadPool(2);
+
+    @Test
+    void leaderCallsOnItsOwnThreadAndFollowersShareTheResult() throws Exception {
+        InFlightGenerations generations = new InFlightGenerations(NO_EXECUTOR, true, 5_000);
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger upstreamCalls = new AtomicInteger();
+
+        AtomicBoolean onCallerThread = new AtomicBoolean();
+        CompletableFuture<String> leader = CompletableFuture.supplyAsync(() -> {
+            Thread caller = Thread.currentThread();
+            return generations.execute("prompt", () -> {
+                onCallerThread.set(Thread.currentThread() == caller);
+                upstreamCalls.incrementAndGet();
+                leaderStarted.countDown();
+                await(release);
+                return "shared reply";
+            });
+        }, pool);
+        assertTrue(leaderStarted.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<String> follower = CompletableFuture.supplyAsync(() ->
+                generations.execute("prompt", () -> {
+                    upstreamCalls.incrementAndGet();
+                    return "own reply";
+                }), pool);
+        while (!Long.valueOf(1).equals(generations.getStats().get("coalescedCalls"))) {
+            Thread.onSpinWait();
+        }
+        release.countDown();
+
+        assertEquals("shared reply", leader.get(5, TimeUnit.SECONDS));
+        assertEquals("shared reply", follower.get(5, TimeUnit.SECONDS));
+        assertEquals(1, upstreamCalls.get());
+        assertTrue(onCallerThread.get(), "the leader called upstream on its own thread");
+        assertEquals(0, generations.getStats().get("inFlight"));
+    }
+
+    @Test
+    void nullKeyIsNeverCoalesced() throws Exception {
+        InFlightGenerations generations = new InFlightGenerations(NO_EXECUTOR, true, 5_000);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch bothStarted = new CountDownLatch(2);
+
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> generations.execute(null, () -> {
+            bothStarted.countDown();
+            await(release);
+            return "first";
+        }), pool);
+        CompletableFuture<String> second = CompletableFuture.supplyAsync(() -> generations.execute(null, () -> {
+            bothStarted.countDown();
+            await(release);
+            return "second";
+        }), pool);
+        assertTrue(bothStarted.await(5, TimeUnit.SECONDS), "both calls went upstream");
+        release.countDown();
+
+        assertEquals("first", first.get(5, TimeUnit.SECONDS));
+        assertEquals("second", second.get(5, TimeUnit.SECONDS));
+        assertEquals(0L, generations.getStats().get("coalescedCalls"));
+    }
+
+    @AfterEach
+    void stopPool() {
+        pool.shutdownNow();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
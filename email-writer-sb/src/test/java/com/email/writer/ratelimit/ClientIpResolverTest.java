@@ -0,0 +1,52 @@
+package com.email.writer.ratelimit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class ClientIpResolverTest {
+
+    private final ClientIpResolver resolver = new ClientIpResolver("127.0.0.0/8,::1/128,10.0.0.0/8,172.16.0.0/12,fc00::/7");
+
+    @Test
+    void takesTheRightmostUntrustedForwardedAddress() {
+        assertEquals("203.0.113.7", resolve("10.0.0.3", "198.51.100.1, 203.0.113.7, 10.0.0.12"));
+        assertEquals("203.0.113.7", resolve("10.0.0.3", " 203.0.113.7:51234 ,10.0.0.12"));
+        assertEquals("2001:db8::7", resolve("fd00::2", "[2001:db8::7]:443, fd00::1"));
+        // 172.32.x is just outside 172.16.0.0/12
+        assertEquals("172.32.0.1", resolve("172.31.255.255", "203.0.113.7, 172.32.0.1"));
+        // Every hop trusted: the leftmost is as far back as we can see
+        assertEquals("10.0.0.20", resolve("10.0.0.3", "10.0.0.20, 10.0.0.12"));
+        // Nothing left of garbage is trusted
+        assertEquals("10.0.0.12", resolve("10.0.0.3", "203.0.113.7, not-an-ip, 10.0.0.12"));
+    }
+
+    @Test
+    void ignoresForwardingHeadersFromUntrustedClients() {
+        assertEquals("198.51.100.24", resolve("198.51.100.24", "192.0.2.1"));
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr("10.0.0.3");
+        request.addHeader("X-Real-IP", "203.0.113.9");
+        assertEquals("203.0.113.9", resolver.resolve(request));
+    }
+
+    @Test
+    void mapsLoopbackToOneLocalIdentifier() {
+        String local = resolve("127.0.0.1", null);
+        assertNotEquals("127.0.0.1", local);
+        assertEquals(local, resolve("::1", null));
+        assertEquals(local, resolve("0:0:0:0:0:0:0:1", null));
+    }
+
+    private String resolve(String remoteAddr, String forwardedFor) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr(remoteAddr);
+        if (forwardedFor != null) {
+            request.addHeader("X-Forwarded-For", forwardedFor);
+        }
+        return resolver.resolve(request);
+    }
+}
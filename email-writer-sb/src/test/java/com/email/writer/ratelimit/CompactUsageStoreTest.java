@@ -0,0 +1,62 @@
+package com.email.writer.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompactUsageStoreTest {
+
+    @Test
+    void parsesIpv4AndIpv6IntoTheSameKeySpace() {
+        assertEquals(new ClientKey(0, 0xFFFF_CB00_7107L), ClientKey.of("203.0.113.7"));
+        assertEquals(ClientKey.of("203.0.113.7"), ClientKey.of("::ffff:203.0.113.7"));
+        assertEquals(ClientKey.of("2001:db8::1"), ClientKey.of("2001:0db8:0000:0000:0000:0000:0000:0001"));
+        assertEquals(ClientKey.of("2001:db8::1"), ClientKey.of("[2001:db8::1%eth0]"));
+        assertEquals(new ClientKey(0x2001_0DB8_0000_0000L, 1), ClientKey.of("2001:db8::1"));
+        assertTrue(ClientKey.of("203.0.113.7").isIpv4());
+
+        assertEquals(-1, ClientKey.parseIpv4("256.1.1.1", 0, 9));
+        assertEquals(-1, ClientKey.parseIpv4("1.2.3", 0, 5));
+        assertNull(ClientKey.parseIpv6("2001:db8::1::2"));
+        assertNull(ClientKey.parseIpv6("1:2:3:4:5:6:7:8:9"));
+        assertNull(ClientKey.parseIpv6("localhost-127.0.0.1"));
+    }
+
+    @Test
+    void hashesOtherIdentifiersOutsideTheAddressSpace() {
+        ClientKey key = ClientKey.of("localhost-127.0.0.1");
+        assertEquals(0xFF, key.high() >>> 56);
+        assertNotEquals(key, ClientKey.of("localhost-127.0.0.2"));
+    }
+
+    @Test
+    void matchesAMapThroughGrowthAndRemoval() {
+        CompactUsageStore store = new CompactUsageStore(4);
+        Map<String, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 20_000; i++) {
+                String ip = "10.0." + random.nextInt(256) + "." + random.nextInt(256);
+                long state = 1 + random.nextInt(100);
+                store.update(ip, s -> state);
+                expected.put(ip, state);
+            }
+            // Drops about half of the entries, which exercises backward-shift deletion in full clusters
+            int removed = store.removeIf(state -> state % 2 == 0);
+            int before = expected.size();
+            expected.values().removeIf(state -> state % 2 == 0);
+            assertEquals(before - expected.size(), removed);
+            assertEquals(expected.size(), store.size());
+            expected.forEach((ip, state) -> assertEquals(state, store.get(ip), ip));
+        }
+        assertEquals(0L, store.get("192.0.2.1"));
+    }
+}
@@ -0,0 +1,43 @@
+package com.email.writer.ratelimit;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A clock tests can move forward, for day rollovers and refills.
+ */
+final class MutableClock extends Clock {
+    private final AtomicLong millis;
+    private final ZoneId zone;
+
+    MutableClock(Instant start, ZoneId zone) {
+        this.millis = new AtomicLong(start.toEpochMilli());
+        this.zone = zone;
+    }
+
+    void advanceMillis(long delta) {
+        millis.addAndGet(delta);
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+        return new MutableClock(instant(), zone);
+    }
+
+    @Override
+    public long millis() {
+        return millis.get();
+    }
+
+    @Override
+    public Instant instant() {
+        return Instant.ofEpochMilli(millis());
+    }
+}
@@ -0,0 +1,237 @@
+package com.email.writer.ratelimit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QuotaTiersTest {
+
+    private static final Instant NOON = Instant.parse("2026-01-15T12:00:00Z");
+
+    private static final Map<String, String> CONFIG = Map.of(
+            "app.rate-limit.tiers.anonymous.daily-limit", "5",
+            "app.rate-limit.tiers.extension.daily-limit", "25",
+            "app.rate-limit.tiers.extension.per-minute", "6",
+            "app.rate-limit.tiers.extension.burst", "2",
+            "app.rate-limit.tiers.pro.daily-tokens", "1000",
+            "app.rate-limit.api-keys", "secret-key",
+            "app.rate-limit.pro-keys", "pro-key");
+
+    @Test
+    void classifiesByStrongestCredential() {
+        ClientClassifier classifier = new ClientClassifier(new QuotaRegistry(CONFIG::get, null));
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        assertEquals(ClientIdentity.anonymous("203.0.113.7"), classifier.classify(request, "203.0.113.7"));
+
+        request.addHeader(ClientClassifier.EXTENSION_HEADER, "3f2b6c1e-9a4d-4b7e-8c21-5d6e7f8a9b0c");
+        assertEquals(new ClientIdentity(QuotaTier.EXTENSION, "ext:3f2b6c1e-9a4d-4b7e-8c21-5d6e7f8a9b0c",
+                "ext-ip:203.0.113.7"), classifier.classify(request, "203.0.113.7"));
+
+        // An unknown key is ignored rather than trusted
+        request.addHeader(ClientClassifier.API_KEY_HEADER, "guessed-key");
+        assertEquals(QuotaTier.EXTENSION, classifier.classify(request, "203.0.113.7").tier());
+
+        MockHttpServletRequest pro = new MockHttpServletRequest();
+        pro.addHeader(ClientClassifier.API_KEY_HEADER, "pro-key");
+        ClientIdentity proClient = classifier.classify(pro, "203.0.113.7");
+        assertEquals(QuotaTier.PRO, proClient.tier());
+        assertFalse(proClient.identifier().contains("pro-key"), "keys are counted under a digest");
+        assertNull(proClient.ipBucket());
+    }
+
+    @Test
+    void madeUpExtensionIdsShareTheirIpCeiling() {
+        MutableClock clock = new MutableClock(NOON, ZoneOffset.UTC);
+        QuotaRegistry quotas = new QuotaRegistry(key -> switch (key) {
+            case "app.rate-limit.tiers.extension.daily-limit" -> "3";
+            case "app.rate-limit.tiers.extension.ip-daily-limit" -> "4";
+            default -> null;
+        }, null);
+        RateLimitingService service = new RateLimitingService(
+                new InMemoryRateLimitBackend(ConcurrentMapUsageStore::new, RefillPolicy.DAILY_FIXED_WINDOW, clock, null),
+                quotas, clock);
+        ClientClassifier classifier = new ClientClassifier(quotas);
+
+        int granted = 0;
+        for (int i = 0; i < 10; i++) {
+            MockHttpServletRequest request = new MockHttpServletRequest();
+            request.addHeader(ClientClassifier.EXTENSION_HEADER, "rotated-install-id-" + i);
+            if (service.charge(classifier.classify(request, "203.0.113.7"), 1, 0).allowed()) {
+                granted++;
+            }
+        }
+        assertEquals(4, granted, "a fresh id per call gets no more than the IP's ceiling");
+
+        MockHttpServletRequest elsewhere = new MockHttpServletRequest();
+        elsewhere.addHeader(ClientClassifier.EXTENSION_HEADER, "rotated-install-id-0");
+        ClientIdentity other = classifier.classify(elsewhere, "198.51.100.1");
+        assertTrue(service.charge(other, 1, 0).allowed(), "other addresses have their own ceiling");
+        assertFalse(service.charge(other, 2, 0).allowed(), "the install's own daily limit still applies");
+        assertEquals(2, service.check(other).decision().used(), "the install spent one call from each address");
+    }
+
+    @Test
+    void perMinuteLimitAllowsABurstThenPacesCalls() {
+        MutableClock clock = new MutableClock(NOON, ZoneOffset.UTC);
+        RateLimitingService service = new RateLimitingService(
+                new InMemoryRateLimitBackend(ConcurrentMapUsageStore::new, RefillPolicy.DAILY_FIXED_WINDOW, clock, null),
+                new QuotaRegistry(CONFIG::get, null), clock);
+        ClientIdentity client = new ClientIdentity(QuotaTier.EXTENSION, "ext:3f2b6c1e-9a4d-4b7e");
+
+        // 6 a minute is one every 10s; a burst of 2 lets 3 through at once
+        for (int i = 0; i < 3; i++) {
+            assertTrue(service.acquire(client, 1).allowed());
+        }
+        RateLimitDecision refused = service.acquire(client, 1);
+        assertFalse(refused.allowed());
+        assertEquals(10, refused.resetInSeconds());
+        assertEquals(3, refused.used(), "a paced call is not charged to the daily limit");
+
+        clock.advanceMillis(10_000);
+        assertTrue(service.acquire(client, 1).allowed());
+        assertFalse(service.acquire(client, 1).allowed());
+
+        // Anonymous clients have no per-minute limit here, only the daily one
+        for (int i = 0; i < 5; i++) {
+            assertTrue(service.tryAcquire("203.0.113.7", 1));
+        }
+        assertFalse(service.tryAcquire("203.0.113.7", 1));
+    }
+
+    @Test
+    void tokenBudgetReservesThenSettlesToReportedUsage() {
+        MutableClock clock = new MutableClock(NOON, ZoneOffset.UTC);
+        RateLimitingService service = new RateLimitingService(
+                new InMemoryRateLimitBackend(ConcurrentMapUsageStore::new, RefillPolicy.DAILY_FIXED_WINDOW, clock, null),
+                new QuotaRegistry(CONFIG::get, null), clock);
+        ClientIdentity pro = new ClientIdentity(QuotaTier.PRO, "pro:test");
+
+        UsageCharge charge = service.charge(pro, 1, 600);
+        assertTrue(charge.allowed());
+        assertEquals(600L, service.getUsageInfo(pro).tokensUsed());
+        charge.accept(100);
+        charge.accept(50);
+        charge.settle();
+        charge.settle();
+        assertEquals(150L, service.getUsageInfo(pro).tokensUsed());
+
+        // Granted while any budget is left, even if this call overshoots it
+        UsageCharge large = service.charge(pro, 1, 2000);
+        assertTrue(large.allowed());
+        large.accept(1200);
+        large.settle();
+
+        UsageCharge refused = service.charge(pro, 1, 10);
+        assertFalse(refused.allowed());
+        assertTrue(refused.rejectionMessage().contains("1000 tokens"));
+        assertEquals(2, service.peek(pro).used(), "a call refused for tokens is not charged");
+        assertEquals(0L, service.getUsageInfo(pro).remainingTokens());
+
+        clock.advanceMillis(TimeUnit.DAYS.toMillis(1));
+        assertTrue(service.charge(pro, 1, 10).allowed());
+
+        // Tiers without a budget never report tokens
+        assertNull(service.getUsageInfo("203.0.113.7").tokensUsed());
+    }
+
+    @Test
+    void refundGivesBackAtMostWhatWasCharged() {
+        MutableClock clock = new MutableClock(NOON, ZoneOffset.UTC);
+        RateLimitingService service = new RateLimitingService(
+                new InMemoryRateLimitBackend(ConcurrentMapUsageStore::new, RefillPolicy.DAILY_FIXED_WINDOW, clock, null),
+                new QuotaRegistry(CONFIG::get, null), clock);
+        ClientIdentity client = ClientIdentity.anonymous("203.0.113.7");
+
+        UsageCharge charge = service.charge(client, 3, 0);
+        assertEquals(3, charge.decision().used());
+        charge.refund(2);
+        assertEquals(1, charge.decision().used());
+        assertTrue(charge.allowed());
+        charge.refund(5);
+        assertEquals(0, service.peek(client).used(), "only the calls this charge made come back");
+
+        assertTrue(service.charge(client, 5, 0).allowed());
+        UsageCharge refused = service.charge(client, 1, 0);
+        refused.refund(1);
+        assertEquals(5, service.peek(client).used(), "a refused charge has nothing to give back");
+    }
+
+    @Test
+    void filterRefusesSpentClientsBeforeTheControllerRuns() throws Exception {
+        MutableClock clock = new MutableClock(NOON, ZoneOffset.UTC);
+        QuotaRegistry quotas = new QuotaRegistry(CONFIG::get, null);
+        RateLimitingService service = new RateLimitingService(
+                new InMemoryRateLimitBackend(ConcurrentMapUsageStore::new, RefillPolicy.DAILY_FIXED_WINDOW, clock, null),
+                quotas, clock);
+        RateLimitFilter filter = new RateLimitFilter(service, new ClientClassifier(quotas),
+                new ClientIpResolver("127.0.0.0/8"), new ObjectMapper().findAndRegisterModules());
+
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/email/generate-reply");
+        request.setRemoteAddr("203.0.113.7");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(request, response, chain);
+        assertEquals(request, chain.getRequest(), "a client with calls left reaches the controller");
+        assertEquals("5", response.getHeader(RateLimitHeaders.REMAINING));
+        assertEquals(0, service.peek("203.0.113.7").used(), "the check charges nothing");
+
+        assertTrue(service.tryAcquire("203.0.113.7", 5));
+        response = new MockHttpServletResponse();
+        chain = new MockFilterChain();
+        filter.doFilter(request, response, chain);
+        assertNull(chain.getRequest());
+        assertEquals(429, response.getStatus());
+        assertEquals("0", response.getHeader(RateLimitHeaders.REMAINING));
+        assertEquals("43200", response.getHeader(RateLimitHeaders.RETRY_AFTER));
+        assertTrue(response.getContentAsString().contains("Rate limit exceeded"));
+
+        // Only generation is checked up front; the usage endpoints pass untouched and set their own headers
+        MockHttpServletRequest status = new MockHttpServletRequest("GET", "/api/rate-limit/status");
+        status.setRemoteAddr("203.0.113.7");
+        response = new MockHttpServletResponse();
+        chain = new MockFilterChain();
+        filter.doFilter(status, response, chain);
+        assertEquals(status, chain.getRequest());
+        assertNull(response.getHeader(RateLimitHeaders.REMAINING));
+    }
+
+    @Test
+    void reloadsTiersFileWhenItChanges(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("tiers.properties");
+        Files.writeString(file, "app.rate-limit.tiers.anonymous.daily-limit=10\n");
+        QuotaRegistry quotas = new QuotaRegistry(CONFIG::get, file);
+        assertEquals(10, quotas.quota(QuotaTier.ANONYMOUS).dailyLimit());
+        assertEquals(25, quotas.quota(QuotaTier.EXTENSION).dailyLimit());
+
+        Files.writeString(file, "app.rate-limit.tiers.anonymous.daily-limit=not-a-number\n");
+        Files.setLastModifiedTime(file, FileTime.from(NOON));
+        quotas.reloadIfChanged();
+        assertEquals(10, quotas.quota(QuotaTier.ANONYMOUS).dailyLimit(), "a bad file keeps the current limits");
+
+        Files.writeString(file, "app.rate-limit.tiers.anonymous.daily-limit=3\n");
+        Files.setLastModifiedTime(file, FileTime.from(NOON.plusSeconds(1)));
+        quotas.reloadIfChanged();
+        assertEquals(3, quotas.quota(QuotaTier.ANONYMOUS).dailyLimit());
+
+        Files.delete(file);
+        quotas.reloadIfChanged();
+        assertEquals(5, quotas.quota(QuotaTier.ANONYMOUS).dailyLimit());
+    }
+}
@@ -0,0 +1,201 @@
+package com.email.writer.ratelimit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Hammers one limiter from many threads and checks that no charge is lost and
+ * no client gets more than its limit, whatever the interleaving.
+ */
+class RateLimitingServiceStressTest {
+
+    private static final int THREADS = 16;
+    private static final Instant NOON = Instant.parse("2026-01-15T12:00:00Z");
+
+    static Stream<Arguments> policiesAndStores() {
+        return Stream.of(RefillPolicy.values())
+                .flatMap(policy -> Stream.of(Arguments.of(policy, "concurrent-map"), Arguments.of(policy, "compact")));
+    }
+
+    @ParameterizedTest
+    @MethodSource("policiesAndStores")
+    void grantsExactlyTheLimitUnderContention(RefillPolicy policy, String store) throws Exception {
+        int limit = 1000;
+        RateLimitingService service = new RateLimitingService(
+                new InMemoryRateLimitBackend(store(store), policy, Clock.fixed(NOON, ZoneOffset.UTC), null), limit);
+
+        AtomicInteger granted = new AtomicInteger();
+        runConcurrently(() -> {
+            for (int i = 0; i < 500; i++) {
+                if (service.tryAcquire("203.0.113.7", 1)) {
+                    granted.incrementAndGet();
+                }
+            }
+        });
+
+        assertEquals(limit, granted.get());
+        assertEquals(limit, service.peek("203.0.113.7").used());
+        assertFalse(service.peek("203.0.113.7").allowed());
+    }
+
+    @ParameterizedTest
+    @EnumSource(RefillPolicy.class)
+    void multiPermitAcquiresAreAllOrNothing(RefillPolicy policy) throws Exception {
+        RateLimitingService service = new RateLimitingService(policy, 1000, Clock.fixed(NOON, ZoneOffset.UTC));
+
+        AtomicInteger granted = new AtomicInteger();
+        runConcurrently(() -> {
+            for (int i = 0; i < 100; i++) {
+                if (service.tryAcquire("203.0.113.7", 3)) {
+                    granted.incrementAndGet();
+                }
+            }
+        });
+
+        assertEquals(333, granted.get());
+        assertEquals(999, service.peek("203.0.113.7").used());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"concurrent-map", "compact"})
+    void rolloverNeverDropsAConcurrentCharge(String store) throws Exception {
+        GenerationalUsageStore generations = new GenerationalUsageStore(store(store), 0);
+        int keys = 500;
+        long[] expected = new long[keys];
+
+        for (int round = 1; round <= 20; round++) {
+            // Touch every client so none has gone a whole generation unseen
+            for (int k = 0; k < keys; k++) {
+                generations.update("client-" + k, state -> state);
+            }
+            long day = round;
+            CountDownLatch halfway = new CountDownLatch(THREADS);
+            Thread roller = new Thread(() -> {
+                try {
+                    halfway.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                generations.advanceTo(day);
+            });
+            roller.start();
+            runConcurrently(() -> {
+                for (int pass = 0; pass < 4; pass++) {
+                    if (pass == 2) {
+                        halfway.countDown();
+                    }
+                    for (int k = 0; k < keys; k++) {
+                        generations.update("client-" + k, state -> state + 1);
+                    }
+                }
+            });
+            roller.join();
+
+            for (int k = 0; k < keys; k++) {
+                expected[k] += 4 * THREADS;
+                assertEquals(expected[k], generations.get("client-" + k), "client-" + k + " in round " + round);
+            }
+            assertEquals(keys, generations.size());
+        }
+    }
+
+    @Test
+    void rolloverDropsClientsIdleForAWholeDay() {
+        MutableClock clock = new MutableClock(NOON, ZoneOffset.UTC);
+        InMemoryRateLimitBackend backend = new InMemoryRateLimitBackend(ConcurrentMapUsageStore::new,
+                RefillPolicy.SLIDING_WINDOW, clock, null);
+        RateLimitingService service = new RateLimitingService(backend, 10);
+
+        assertTrue(service.tryAcquire("203.0.113.7", 4));
+        assertTrue(service.tryAcquire("203.0.113.8", 4));
+
+        // Yesterday's usage still weighs on a sliding window, so it must survive the first rollover
+        clock.advanceMillis(TimeUnit.DAYS.toMillis(1));
+        backend.cleanup();
+        assertEquals(2, service.getStats().get("liveEntries"));
+        assertTrue(service.peek("203.0.113.7").used() > 0);
+        assertTrue(service.tryAcquire("203.0.113.7", 1));
+
+        clock.advanceMillis(TimeUnit.DAYS.toMillis(1));
+        backend.cleanup();
+        assertEquals(1, service.getStats().get("liveEntries"));
+        assertEquals(1L, service.getStats().get("reclaimedEntries"));
+    }
+
+    @Test
+    void fixedWindowResetsAtLocalMidnight() {
+        MutableClock clock = new MutableClock(Instant.parse("2026-01-15T22:30:00Z"), ZoneId.of("Europe/Berlin"));
+        RateLimitingService service = new RateLimitingService(RefillPolicy.DAILY_FIXED_WINDOW, 2, clock);
+
+        assertTrue(service.tryAcquire("203.0.113.7", 2));
+        assertFalse(service.tryAcquire("203.0.113.7", 1));
+
+        // 23:30 UTC is 00:30 the next day in Berlin
+        clock.advanceMillis(TimeUnit.HOURS.toMillis(1));
+        assertTrue(service.tryAcquire("203.0.113.7", 2));
+    }
+
+    @Test
+    void tokenBucketRefillsThroughTheDay() {
+        MutableClock clock = new MutableClock(NOON, ZoneOffset.UTC);
+        RateLimitingService service = new RateLimitingService(RefillPolicy.TOKEN_BUCKET, 24, clock);
+
+        assertTrue(service.tryAcquire("203.0.113.7", 24));
+        assertFalse(service.tryAcquire("203.0.113.7", 1));
+        assertEquals(3600, service.peek("203.0.113.7").resetInSeconds());
+
+        // 24 per day is one per hour
+        clock.advanceMillis(TimeUnit.HOURS.toMillis(1));
+        assertTrue(service.tryAcquire("203.0.113.7", 1));
+        assertFalse(service.tryAcquire("203.0.113.7", 1));
+    }
+
+    private static Supplier<UsageStore> store(String name) {
+        // A tiny initial capacity makes the compact store grow while under contention
+        return name.equals("compact") ? () -> new CompactUsageStore(4) : ConcurrentMapUsageStore::new;
+    }
+
+    static void runConcurrently(Runnable task) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    task.run();
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
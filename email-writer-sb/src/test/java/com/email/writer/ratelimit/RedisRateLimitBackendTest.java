@@ -0,0 +1,156 @@
+package com.email.writer.ratelimit;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the Redis backend against a real redis-server, with two backends
+ * standing in for two application instances behind a load balancer.
+ */
+class RedisRateLimitBackendTest {
+
+    private static final Instant NOON = Instant.parse("2026-01-15T12:00:00Z");
+
+    private static RedisServer server;
+    private static LettuceConnectionFactory connectionFactory;
+    private static StringRedisTemplate redis;
+
+    private final MutableClock clock = new MutableClock(NOON, ZoneOffset.UTC);
+
+    @BeforeAll
+    static void startRedis() throws IOException {
+        int port = freePort();
+        server = new RedisServer(port);
+        server.start();
+        connectionFactory = connectionFactory(port);
+        redis = new StringRedisTemplate(connectionFactory);
+    }
+
+    @AfterAll
+    static void stopRedis() throws IOException {
+        connectionFactory.destroy();
+        server.stop();
+    }
+
+    @BeforeEach
+    void flushRedis() {
+        redis.execute(connection -> {
+            connection.serverCommands().flushAll();
+            return null;
+        }, true);
+    }
+
+    @ParameterizedTest
+    @EnumSource(RefillPolicy.class)
+    void nodesShareOneLimit(RefillPolicy policy) throws Exception {
+        RateLimitingService first = new RateLimitingService(backend(policy, 1, true), 1000);
+        RateLimitingService second = new RateLimitingService(backend(policy, 1, true), 1000);
+
+        AtomicInteger granted = new AtomicInteger();
+        RateLimitingServiceStressTest.runConcurrently(() -> {
+            for (int i = 0; i < 70; i++) {
+                if ((i % 2 == 0 ? first : second).tryAcquire("203.0.113.7", 1)) {
+                    granted.incrementAndGet();
+                }
+            }
+        });
+
+        assertEquals(1000, granted.get());
+        assertEquals(1000, first.peek("203.0.113.7").used());
+        assertFalse(second.peek("203.0.113.7").allowed());
+    }
+
+    @Test
+    void leasesServeLocallyAndRefundWhatIsLeft() {
+        RedisRateLimitBackend leasing = backend(RefillPolicy.DAILY_FIXED_WINDOW, 3, true);
+        RedisRateLimitBackend other = backend(RefillPolicy.DAILY_FIXED_WINDOW, 1, true);
+
+        assertTrue(leasing.acquire("203.0.113.7", 1, 10).allowed());
+        long roundTrips = (long) leasing.getStats().get("roundTrips");
+        assertTrue(leasing.acquire("203.0.113.7", 1, 10).allowed());
+        assertEquals(roundTrips, leasing.getStats().get("roundTrips"));
+
+        // The other node sees the whole lease as spent
+        int spent = 0;
+        while (other.acquire("203.0.113.7", 1, 10).allowed()) {
+            spent++;
+        }
+        assertEquals(7, spent);
+
+        clock.advanceMillis(TimeUnit.SECONDS.toMillis(2));
+        leasing.expireLeases();
+        assertTrue(other.acquire("203.0.113.7", 1, 10).allowed());
+        assertFalse(other.acquire("203.0.113.7", 1, 10).allowed());
+        assertEquals(1L, leasing.getStats().get("refundedPermits"));
+    }
+
+    @Test
+    void tokenBucketRefillsLikeTheInMemoryPolicy() {
+        RedisRateLimitBackend backend = backend(RefillPolicy.TOKEN_BUCKET, 1, true);
+
+        assertTrue(backend.acquire("203.0.113.7", 24, 24).allowed());
+        assertFalse(backend.acquire("203.0.113.7", 1, 24).allowed());
+        assertEquals(3600, backend.peek("203.0.113.7", 24).resetInSeconds());
+
+        clock.advanceMillis(TimeUnit.HOURS.toMillis(1));
+        assertTrue(backend.acquire("203.0.113.7", 1, 24).allowed());
+        assertFalse(backend.acquire("203.0.113.7", 1, 24).allowed());
+    }
+
+    @Test
+    void failsOpenOrClosedWhenRedisIsDown() throws Exception {
+        LettuceConnectionFactory unreachable = connectionFactory(freePort());
+        try {
+            StringRedisTemplate down = new StringRedisTemplate(unreachable);
+            RedisRateLimitBackend open = new RedisRateLimitBackend(down, RefillPolicy.DAILY_FIXED_WINDOW,
+                    "rate-limit:", 1, 1000, true, clock);
+            RedisRateLimitBackend closed = new RedisRateLimitBackend(down, RefillPolicy.DAILY_FIXED_WINDOW,
+                    "rate-limit:", 1, 1000, false, clock);
+
+            assertTrue(open.acquire("203.0.113.7", 1, 5).allowed());
+            assertFalse(closed.acquire("203.0.113.7", 1, 5).allowed());
+            assertEquals(1L, closed.getStats().get("failures"));
+        } finally {
+            unreachable.destroy();
+        }
+    }
+
+    private RedisRateLimitBackend backend(RefillPolicy policy, int leaseSize, boolean failOpen) {
+        return new RedisRateLimitBackend(redis, policy, "rate-limit:", leaseSize, 1000, failOpen, clock);
+    }
+
+    private static LettuceConnectionFactory connectionFactory(int port) {
+        LettuceConnectionFactory factory = new LettuceConnectionFactory(new RedisStandaloneConfiguration("localhost", port),
+                LettuceClientConfiguration.builder().commandTimeout(Duration.ofSeconds(2)).build());
+        factory.afterPropertiesSet();
+        factory.start();
+        return factory;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.email.writer.ratelimit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * A limiter rebuilt over the same datasource, as after a restart, picks up
+ * where the flushed state left off.
+ */
+@DataJpaTest
+@Import(UsageWriteBehind.class)
+@TestPropertySource(properties = "app.rate-limit.persistence.enabled=true")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class UsageWriteBehindTest {
+
+    private static final Clock NOW = Clock.fixed(Instant.now(), ZoneOffset.UTC);
+
+    @Autowired
+    private UsageWriteBehind writeBehind;
+
+    @Autowired
+    private UsageCounterRepository repository;
+
+    @Test
+    void usageSurvivesARestart() {
+        RateLimitingService before = limiter();
+        before.tryAcquire("203.0.113.7", 3);
+        before.tryAcquire("203.0.113.7", 1);
+        before.tryAcquire("198.51.100.1", 5);
+        assertEquals(0, repository.count());
+
+        writeBehind.flush();
+        assertEquals(2, repository.count());
+
+        RateLimitingService after = limiter();
+        assertEquals(4, after.peek("203.0.113.7").used());
+        assertFalse(after.tryAcquire("198.51.100.1", 1));
+
+        // Charging again updates the saved row rather than adding one
+        after.tryAcquire("203.0.113.7", 1);
+        writeBehind.flush();
+        assertEquals(2, repository.count());
+        assertEquals(5, limiter().peek("203.0.113.7").used());
+    }
+
+    private RateLimitingService limiter() {
+        return new RateLimitingService(new InMemoryRateLimitBackend(
+                ConcurrentMapUsageStore::new, RefillPolicy.DAILY_FIXED_WINDOW, NOW, writeBehind), 5);
+    }
+}
@@ -0,0 +1,105 @@
+package com.email.writer.waitlist;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:waitlist-counters;DB_CLOSE_DELAY=-1")
+class WaitlistCountersTest {
+
+    private static final Instant NOON = Instant.parse("2026-01-15T12:00:00Z");
+
+    @Autowired
+    private WaitlistRepository waitlistRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void seedsFromTheTableThenKeepsADayOfSignupsInTheRing() {
+        LocalDateTime noon = LocalDateTime.ofInstant(NOON, ZoneOffset.UTC);
+        insert(1, "website", noon.minusHours(2));
+        insert(2, "website", noon.minusHours(2));
+        insert(3, "extension", noon.minusDays(2));
+
+        SteppingClock clock = new SteppingClock(NOON);
+        WaitlistCounters counters = new WaitlistCounters(waitlistRepository, clock);
+        counters.init();
+        assertEquals(3, counters.getTotal());
+        assertEquals(Map.of("website", 2L, "extension", 1L), counters.getSignupsBySource());
+        assertEquals(2, counters.getRecentSignups(), "only signups from the last 24 hours are seeded into the ring");
+
+        counters.recordJoin(join(noon));
+        assertEquals(4, counters.getTotal());
+        assertEquals(3, counters.getRecentSignups());
+
+        // The seeded signups age out a day after they were made
+        clock.advance(Duration.ofHours(22).plusMinutes(1));
+        assertEquals(1, counters.getRecentSignups());
+        counters.recordJoin(join(noon.plusHours(22).plusMinutes(1)));
+
+        // A day later the noon join's bucket is reused for a new minute rather than added to
+        clock.advance(Duration.ofMinutes(119));
+        WaitlistEntry dayLater = join(noon.plusDays(1));
+        counters.recordJoin(dayLater);
+        assertEquals(2, counters.getRecentSignups());
+
+        counters.recordDropped(dayLater);
+        assertEquals(1, counters.getRecentSignups());
+        assertEquals(5, counters.getTotal());
+        assertEquals(Map.of("website", 4L, "extension", 1L), counters.getSignupsBySource());
+    }
+
+    private void insert(long id, String source, LocalDateTime createdAt) {
+        jdbcTemplate.update("INSERT INTO waitlist_entries (id, name, email, created_at, source, notified, queue_position) "
+                        + "VALUES (?, ?, ?, ?, ?, ?, ?)",
+                id, "Entry " + id, "entry" + id + "@example.com", Timestamp.valueOf(createdAt), source, false, id);
+    }
+
+    private static WaitlistEntry join(LocalDateTime createdAt) {
+        WaitlistEntry entry = new WaitlistEntry("Joined", "joined-" + createdAt + "@example.com", "website");
+        entry.setCreatedAt(createdAt);
+        return entry;
+    }
+
+    // UTC clock the test moves forward by hand
+    private static final class SteppingClock extends Clock {
+
+        private Instant now;
+
+        SteppingClock(Instant start) {
+            this.now = start;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.email.writer.waitlist;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WaitlistEmailIndexTest {
+
+    @Test
+    void keepsEveryAddedEmailThroughGrowth() {
+        WaitlistEmailIndex index = new WaitlistEmailIndex(null, null, 4);
+        for (int i = 0; i < 20_000; i++) {
+            index.add("user" + i + "@example.com");
+        }
+        index.add("user7@example.com");
+
+        assertEquals(20_000, index.size());
+        for (int i = 0; i < 20_000; i++) {
+            assertTrue(index.mightContain("user" + i + "@example.com"));
+        }
+        int falseHits = 0;
+        for (int i = 20_000; i < 40_000; i++) {
+            if (index.mightContain("user" + i + "@example.com")) {
+                falseHits++;
+            }
+        }
+        assertEquals(0, falseHits);
+        assertFalse(index.mightContain(""));
+    }
+}
@@ -0,0 +1,82 @@
+package com.email.writer.waitlist;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:waitlist-export;DB_CLOSE_DELAY=-1")
+class WaitlistExportTest {
+
+    @Autowired
+    private WaitlistService waitlistService;
+
+    @Autowired
+    private WaitlistExporter waitlistExporter;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void notifiesAndExportsAcrossSparseIdsAndPages() throws Exception {
+        waitlistService.addToWaitlist(new WaitlistEntry("=cmd, \"quoted\"", "first@example.com", "website"));
+        waitlistService.addToWaitlist(new WaitlistEntry("Second", "second@example.com", "extension"));
+
+        // Rows far apart in id and more than a page of them, as older tables have
+        for (int i = 0; i < WaitlistExporter.PAGE_SIZE + 10; i++) {
+            jdbcTemplate.update("INSERT INTO waitlist_entries "
+                            + "(id, name, email, created_at, source, notified, queue_position) VALUES (?, ?, ?, ?, ?, ?, ?)",
+                    10_000L + i * 7, "Imported " + i, "imported" + i + "@example.com",
+                    Timestamp.valueOf(LocalDateTime.now()), "import", false, 10_000L + i);
+        }
+        int total = WaitlistExporter.PAGE_SIZE + 12;
+
+        assertEquals(total, waitlistService.markAllAsNotified());
+        assertEquals(0, waitlistService.markAllAsNotified());
+
+        waitlistService.addToWaitlist(new WaitlistEntry("Late", "late@example.com", "website"));
+        assertEquals(1, waitlistService.markAllAsNotified());
+
+        ByteArrayOutputStream csv = new ByteArrayOutputStream();
+        assertEquals(total + 1, waitlistExporter.export(WaitlistExporter.Format.CSV, csv));
+        String[] lines = csv.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(total + 2, lines.length);
+        assertEquals("id,position,name,email,source,created_at,notified", lines[0]);
+        assertTrue(lines[1].startsWith("1,1,\"'=cmd, \"\"quoted\"\"\",first@example.com,website,"), lines[1]);
+
+        ByteArrayOutputStream ndjson = new ByteArrayOutputStream();
+        waitlistExporter.export(WaitlistExporter.Format.NDJSON, ndjson);
+        lines = ndjson.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(total + 1, lines.length);
+        JsonNode last = objectMapper.readTree(lines[lines.length - 1]);
+        assertEquals("imported" + (WaitlistExporter.PAGE_SIZE + 9) + "@example.com", last.get("email").asText());
+        assertEquals(true, last.get("notified").asBoolean());
+    }
+
+    @Test
+    void adminKeyFailsClosedWhenUnset() {
+        WaitlistAdminKey unset = new WaitlistAdminKey(" ");
+        assertFalse(unset.matches(""));
+        assertFalse(unset.matches(" "));
+        assertFalse(unset.matches(null));
+
+        WaitlistAdminKey configured = new WaitlistAdminKey("s3cret-admin");
+        assertTrue(configured.matches("s3cret-admin"));
+        assertFalse(configured.matches("s3cret-admi"));
+        assertFalse(configured.matches(null));
+    }
+}
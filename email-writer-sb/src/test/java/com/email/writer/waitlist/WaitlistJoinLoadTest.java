@@ -0,0 +1,98 @@
+package com.email.writer.waitlist;
+
+import com.email.writer.EmailWriterSbApplication;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Sustained waitlist joins over HTTP against the H2 file database the prod
+ * profile uses, reporting acknowledged joins per second and how long the
+ * write-behind takes to get every row into the table.
+ *
+ * Run with: mvn test -Dtest=WaitlistJoinLoadTest -Dloadtest=true
+ */
+@EnabledIfSystemProperty(named = "loadtest", matches = "true")
+class WaitlistJoinLoadTest {
+
+    private static final int JOINS = 20_000;
+    private static final int CLIENT_CONCURRENCY = 64;
+
+    @Test
+    void sustainedJoins(@TempDir Path dataDir) throws Exception {
+        // Command-line style args so they override application.properties
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(EmailWriterSbApplication.class)
+                .run("--server.port=0",
+                        "--spring.datasource.url=jdbc:h2:file:" + dataDir.resolve("smartreply"),
+                        "--gemini.api.url=http://127.0.0.1:9/unused",
+                        "--gemini.api.key=load-test",
+                        "--logging.level.com.email.writer=WARN")) {
+
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            URI endpoint = URI.create("http://127.0.0.1:" + port + "/api/waitlist/join");
+
+            HttpClient client = HttpClient.newBuilder()
+                    .executor(Executors.newFixedThreadPool(CLIENT_CONCURRENCY))
+                    .connectTimeout(Duration.ofSeconds(5))
+                    .build();
+
+            AtomicInteger succeeded = new AtomicInteger();
+            Semaphore clientSlots = new Semaphore(CLIENT_CONCURRENCY);
+            List<CompletableFuture<Void>> calls = new ArrayList<>(JOINS);
+
+            long started = System.nanoTime();
+            for (int i = 0; i < JOINS; i++) {
+                clientSlots.acquire();
+                HttpRequest request = HttpRequest.newBuilder(endpoint)
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(
+                                "{\"name\":\"Load Test " + i + "\",\"email\":\"load" + i + "@example.com\"}"))
+                        .build();
+                calls.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                        .thenAccept(response -> {
+                            if (response.statusCode() == 200) {
+                                succeeded.incrementAndGet();
+                            }
+                        })
+                        .whenComplete((ignored, error) -> clientSlots.release()));
+            }
+            CompletableFuture.allOf(calls.toArray(new CompletableFuture[0])).join();
+            long acknowledgedMs = (System.nanoTime() - started) / 1_000_000;
+
+            context.getBean(WaitlistIngestion.class).flush();
+            long storedMs = (System.nanoTime() - started) / 1_000_000;
+
+            JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+            long rows = jdbc.queryForObject("SELECT COUNT(*) FROM waitlist_entries", Long.class);
+            long positions = jdbc.queryForObject("SELECT COUNT(DISTINCT queue_position) FROM waitlist_entries", Long.class);
+            long maxPosition = jdbc.queryForObject("SELECT MAX(queue_position) FROM waitlist_entries", Long.class);
+
+            System.out.printf("%d joins, %d ok: acknowledged in %d ms (%.0f joins/s), stored in %d ms (%.0f rows/s)%n",
+                    JOINS, succeeded.get(), acknowledgedMs, JOINS * 1000.0 / acknowledgedMs,
+                    storedMs, JOINS * 1000.0 / storedMs);
+            assertEquals(JOINS, succeeded.get());
+            assertEquals(JOINS, rows);
+            assertEquals(JOINS, positions);
+            assertEquals(JOINS, maxPosition);
+        }
+    }
+}
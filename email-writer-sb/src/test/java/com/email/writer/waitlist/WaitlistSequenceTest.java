@@ -0,0 +1,57 @@
+package com.email.writer.waitlist;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:waitlist-sequence;DB_CLOSE_DELAY=-1")
+class WaitlistSequenceTest {
+
+    @Autowired
+    private WaitlistSequence waitlistSequence;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void numbersOldEntriesBySignupThenIdAndReusesPositionsOfFailedJoins() {
+        LocalDateTime earlier = LocalDateTime.of(2025, 3, 1, 9, 0);
+        LocalDateTime later = earlier.plusHours(1);
+        insertUnpositioned(30, later);
+        insertUnpositioned(20, later);
+        insertUnpositioned(40, earlier);
+
+        waitlistSequence.init();
+        assertEquals(List.of(40L, 20L, 30L),
+                jdbcTemplate.queryForList("SELECT id FROM waitlist_entries ORDER BY queue_position", Long.class));
+        assertEquals(List.of(1L, 2L, 3L),
+                jdbcTemplate.queryForList("SELECT queue_position FROM waitlist_entries ORDER BY queue_position", Long.class));
+
+        WaitlistEntry refused = new WaitlistEntry("Refused", "refused@example.com", "website");
+        assertThrows(WaitlistException.class, () -> waitlistSequence.assign(refused, () -> {
+            throw new WaitlistException("queue full");
+        }));
+        assertNull(refused.getId());
+        assertNull(refused.getPosition());
+
+        WaitlistEntry next = new WaitlistEntry("Next", "next@example.com", "website");
+        waitlistSequence.assign(next, () -> { });
+        assertEquals(41L, next.getId());
+        assertEquals(4L, next.getPosition(), "the failed join's position goes to the next one");
+    }
+
+    private void insertUnpositioned(long id, LocalDateTime createdAt) {
+        jdbcTemplate.update("INSERT INTO waitlist_entries (id, name, email, created_at, source, notified) "
+                        + "VALUES (?, ?, ?, ?, ?, ?)",
+                id, "Entry " + id, "entry" + id + "@example.com", Timestamp.valueOf(createdAt), "import", false);
+    }
+}